@@ -6,10 +6,8 @@ import static com.github.marschall.memoryfilesystem.MemoryFileSystemProvider.SCH
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
-import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -22,6 +20,11 @@ final class AbsolutePath extends NonEmptyPath {
     this.root = root;
   }
 
+  private AbsolutePath(MemoryFileSystem fileSystem, Root root, List<String> nameElements, String[] lookUpKeys) {
+    super(fileSystem, nameElements, lookUpKeys);
+    this.root = root;
+  }
+
   @Override
   public boolean isAbsolute() {
     return true;
@@ -33,7 +36,7 @@ final class AbsolutePath extends NonEmptyPath {
   }
 
   @Override
-  public String toString() {
+  String buildString() {
     // TODO estimate size
     StringBuilder buffer = new StringBuilder();
     buffer.append(this.root);
@@ -55,7 +58,8 @@ final class AbsolutePath extends NonEmptyPath {
       return this.root;
     } else {
       List<String> subList = this.getNameElements().subList(0, this.getNameElements().size() - 1);
-      return createAbsolute(this.getMemoryFileSystem(), this.root, subList);
+      // look ups go through the parent, share the look up keys with it
+      return new AbsolutePath(this.getMemoryFileSystem(), this.root, subList, this.getSharedLookUpKeys());
     }
   }
 
@@ -282,16 +286,10 @@ final class AbsolutePath extends NonEmptyPath {
 
 
   @Override
-  public int hashCode() {
-    // TODO expensive, safe
-    Collator collator = this.getMemoryFileSystem().getCollator();
+  int computeHashCode() {
     int result = 17;
     result = 31 * result + this.root.hashCode();
-    for (String each : this.getNameElements()) {
-      CollationKey collationKey = collator.getCollationKey(each);
-      result = 31 * result + Arrays.hashCode(collationKey.toByteArray());
-    }
-    return result;
+    return this.hashNameElements(result);
   }
 
 }
@@ -3,6 +3,7 @@ package com.github.marschall.memoryfilesystem;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import java.io.File;
 import java.io.IOException;
@@ -180,15 +181,8 @@ abstract class AbstractPath implements Path {
   abstract int compareTo(AbstractPath other);
 
   @Override
-  public WatchKey register(WatchService watcher, Kind<?>[] events, Modifier... modifiers) {
-    // TODO report bug
-    // TODO java.nio.file.NotDirectoryException
-    if (true) {
-      throw new UnsupportedOperationException();
-    }
-    if (modifiers != null && modifiers.length > 0) {
-      throw new UnsupportedOperationException("no modifiers supported");
-    }
+  public WatchKey register(WatchService watcher, Kind<?>[] events, Modifier... modifiers) throws IOException {
+    boolean fileTree = isFileTree(modifiers);
     if (watcher == null) {
       throw new NullPointerException("watcher is null");
     }
@@ -197,14 +191,30 @@ abstract class AbstractPath implements Path {
     if (memoryWatcher.getMemoryFileSystem() != this.fileSystem) {
       throw new IllegalArgumentException("watcher has to be from the same file system");
     }
-    MemoryWatchKey watchKey = new MemoryWatchKey(this, memoryWatcher, this.asSet(events));
-    this.fileSystem.register(watchKey);
-    return watchKey;
+    return this.fileSystem.register(this, memoryWatcher, this.asSet(events), fileTree);
+  }
+
+  private static boolean isFileTree(Modifier[] modifiers) {
+    boolean fileTree = false;
+    if (modifiers != null) {
+      for (Modifier modifier : modifiers) {
+        if (modifier == null) {
+          throw new NullPointerException("modifier is null");
+        }
+        // also accept com.sun.nio.file.ExtendedWatchEventModifier.FILE_TREE
+        if (modifier == MemoryWatchEventModifier.FILE_TREE || modifier.name().equals(MemoryWatchEventModifier.FILE_TREE.name())) {
+          fileTree = true;
+        } else {
+          throw new UnsupportedOperationException("unsupported modifier: " + modifier);
+        }
+      }
+    }
+    return fileTree;
   }
 
   private Set<Kind<?>> asSet(Kind<?>[] eventKinds) {
     if (eventKinds == null) {
-      throw new NullPointerException("watcher is null");
+      throw new NullPointerException("events is null");
     }
     int numberOfKinds = eventKinds.length;
     if (numberOfKinds == 0) {
@@ -225,7 +235,11 @@ abstract class AbstractPath implements Path {
   }
 
   private void validate(Kind<?> eventKind) {
-    if (eventKind != ENTRY_CREATE && eventKind != ENTRY_DELETE && eventKind != ENTRY_MODIFY) {
+    if (eventKind == null) {
+      throw new NullPointerException("event kind is null");
+    }
+    // OVERFLOW is always signaled and may be present
+    if (eventKind != ENTRY_CREATE && eventKind != ENTRY_DELETE && eventKind != ENTRY_MODIFY && eventKind != OVERFLOW) {
       throw new UnsupportedOperationException("unsupported event kind: " + eventKind);
     }
   }
@@ -5,19 +5,69 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousFileChannel;
 import java.nio.channels.CompletionHandler;
 import java.nio.channels.FileLock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 final class AsynchronousBlockChannel extends AsynchronousFileChannel {
 
+  /**
+   * The maximum number of completion handlers invoked synchronously on the
+   * stack of one thread, the same limit the default file system uses.
+   */
+  private static final int MAX_NESTED_COMPLETIONS = 16;
+
+  // the number of completion handlers currently invoked synchronously by a thread
+  private static final ThreadLocal<int[]> NESTED_COMPLETIONS = ThreadLocal.withInitial(() -> new int[1]);
+
   private final BlockChannel delegate;
   private final ExecutorService workExecutor;
   private final ExecutorService callbackExecutor;
+  private final boolean synchronousCompletion;
 
-  AsynchronousBlockChannel(BlockChannel delegate, ExecutorService workExecutor, ExecutorService callbackExecutor) {
+  AsynchronousBlockChannel(BlockChannel delegate, ExecutorService workExecutor, ExecutorService callbackExecutor,
+          boolean synchronousCompletion) {
     this.delegate = delegate;
     this.workExecutor = workExecutor;
     this.callbackExecutor = callbackExecutor;
+    this.synchronousCompletion = synchronousCompletion;
+  }
+
+  private static <V> Future<V> completedFuture(Callable<V> operation) {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    try {
+      future.complete(operation.call());
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private <V, A> void completeSynchronously(Callable<V> operation, A attachment, CompletionHandler<V, ? super A> handler) {
+    V result;
+    try {
+      result = operation.call();
+    } catch (Exception e) {
+      this.invokeSynchronously(() -> handler.failed(e, attachment));
+      return;
+    }
+    this.invokeSynchronously(() -> handler.completed(result, attachment));
+  }
+
+  private void invokeSynchronously(Runnable completion) {
+    int[] nested = NESTED_COMPLETIONS.get();
+    if (nested[0] >= MAX_NESTED_COMPLETIONS) {
+      // a handler issuing further operations would otherwise overflow the stack
+      this.callbackExecutor.submit(completion);
+      return;
+    }
+    nested[0] += 1;
+    try {
+      completion.run();
+    } finally {
+      nested[0] -= 1;
+    }
   }
 
   private <A> void failed(final Throwable exception, final A attachment, final CompletionHandler<?, ? super A> handler) {
@@ -85,6 +135,10 @@ final class AsynchronousBlockChannel extends AsynchronousFileChannel {
 
   @Override
   public <A> void read(final ByteBuffer dst, final long position, final A attachment, final CompletionHandler<Integer, ? super A> handler) {
+    if (this.synchronousCompletion) {
+      this.completeSynchronously(() -> this.delegate.read(dst, position), attachment, handler);
+      return;
+    }
     this.workExecutor.submit(() -> {
       try {
         final int read = AsynchronousBlockChannel.this.delegate.read(dst, position);
@@ -98,11 +152,18 @@ final class AsynchronousBlockChannel extends AsynchronousFileChannel {
 
   @Override
   public Future<Integer> read(final ByteBuffer dst, final long position) {
+    if (this.synchronousCompletion) {
+      return completedFuture(() -> this.delegate.read(dst, position));
+    }
     return this.workExecutor.submit(() -> AsynchronousBlockChannel.this.delegate.read(dst, position));
   }
 
   @Override
   public <A> void write(final ByteBuffer src, final long position, final A attachment, final CompletionHandler<Integer, ? super A> handler) {
+    if (this.synchronousCompletion) {
+      this.completeSynchronously(() -> this.delegate.write(src, position), attachment, handler);
+      return;
+    }
     this.workExecutor.submit(() -> {
       try {
         final int written = AsynchronousBlockChannel.this.delegate.write(src, position);
@@ -116,6 +177,9 @@ final class AsynchronousBlockChannel extends AsynchronousFileChannel {
 
   @Override
   public Future<Integer> write(final ByteBuffer src, final long position) {
+    if (this.synchronousCompletion) {
+      return completedFuture(() -> this.delegate.write(src, position));
+    }
     return this.workExecutor.submit(() -> AsynchronousBlockChannel.this.delegate.write(src, position));
   }
 
@@ -0,0 +1,105 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the blocks in which the contents of files are stored.
+ *
+ * <p>Every file system has one allocator, files of file systems with
+ * equal allocators can share blocks.</p>
+ */
+final class BlockAllocator {
+
+  /**
+   * The largest supported block size, large enough to make the loop
+   * overhead negligible while keeping the maximum file size in a
+   * {@code long}.
+   */
+  static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * Allocates blocks of the default size on the Java heap.
+   */
+  static final BlockAllocator HEAP = new BlockAllocator(false, MemoryInode.BLOCK_SIZE);
+
+  /**
+   * Allocates blocks of the default size outside of the Java heap.
+   */
+  static final BlockAllocator DIRECT = new BlockAllocator(true, MemoryInode.BLOCK_SIZE);
+
+  /**
+   * Whether the blocks are allocated outside of the Java heap.
+   *
+   * <p>The memory is limited by {@code -XX:MaxDirectMemorySize} and
+   * given back once the blocks are no longer referenced.</p>
+   */
+  private final boolean direct;
+
+  private final int blockSize;
+
+  /**
+   * Read by holes, never written.
+   */
+  private final byte[] zeros;
+
+  BlockAllocator(boolean direct, int blockSize) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("block size must be positive but was " + blockSize);
+    }
+    if (blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("block size must not be larger than " + MAX_BLOCK_SIZE + " but was " + blockSize);
+    }
+    this.direct = direct;
+    this.blockSize = blockSize;
+    this.zeros = new byte[blockSize];
+  }
+
+  /**
+   * Allocates a new, zero filled block.
+   *
+   * @param capacity the size of the block in bytes, at most {@link #getBlockSize()}
+   * @return the new block, position is {@code 0} and limit is {@code capacity}
+   */
+  ByteBuffer allocate(int capacity) {
+    if (this.direct) {
+      return ByteBuffer.allocateDirect(capacity);
+    } else {
+      return ByteBuffer.allocate(capacity);
+    }
+  }
+
+  /**
+   * Returns a block of zeros that must not be written.
+   */
+  ByteBuffer zeros() {
+    return ByteBuffer.wrap(this.zeros);
+  }
+
+  int getBlockSize() {
+    return this.blockSize;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof BlockAllocator)) {
+      return false;
+    }
+    BlockAllocator other = (BlockAllocator) obj;
+    return this.direct == other.direct
+            && this.blockSize == other.blockSize;
+  }
+
+  @Override
+  public int hashCode() {
+    return Boolean.hashCode(this.direct) * 31 + this.blockSize;
+  }
+
+  @Override
+  public String toString() {
+    return (this.direct ? "direct" : "heap") + " blocks of " + this.blockSize + " bytes";
+  }
+
+}
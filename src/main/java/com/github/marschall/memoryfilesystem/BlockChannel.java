@@ -13,6 +13,7 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -169,7 +170,28 @@ abstract class BlockChannel extends FileChannel {
   }
 
   @Override
-  public MappedByteBuffer map(MapMode mode, long position, long size) {
+  public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+    this.closedCheck();
+    Objects.requireNonNull(mode, "mode");
+    if (position < 0L) {
+      throw new IllegalArgumentException("position must not be negative");
+    }
+    if (size < 0L) {
+      throw new IllegalArgumentException("size must not be negative");
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("size must not be larger than " + Integer.MAX_VALUE);
+    }
+    if (position + size < 0L) {
+      throw new IllegalArgumentException("position + size overflows");
+    }
+    this.readCheck();
+    if (mode != MapMode.READ_ONLY) {
+      this.writeCheck();
+    }
+    // MappedByteBuffer has no accessible constructor, only the JDK can create
+    // instances and only for a file descriptor so there is no way to hand out
+    // a view of our blocks, even for direct blocks
     throw new UnsupportedOperationException("memory file system does not support mmapped IO");
   }
 
@@ -193,6 +215,23 @@ abstract class BlockChannel extends FileChannel {
   }
 
 
+  long nextData(long position) throws IOException {
+    this.seekCheck(position);
+    return this.memoryContents.nextData(position);
+  }
+
+  long nextHole(long position) throws IOException {
+    this.seekCheck(position);
+    return this.memoryContents.nextHole(position);
+  }
+
+  private void seekCheck(long position) throws ClosedChannelException {
+    this.closedCheck();
+    if (position < 0L) {
+      throw new IllegalArgumentException("position must not be negative");
+    }
+  }
+
   @Override
   public long size() throws IOException {
     this.closedCheck();
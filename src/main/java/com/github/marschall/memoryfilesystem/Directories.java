@@ -5,6 +5,7 @@ import static java.nio.file.FileVisitResult.CONTINUE;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystemException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
@@ -28,7 +29,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Implements recursive copy missing in {@link Files}.
+ * Implements directory operations missing in {@link Files}.
  */
 public final class Directories {
 
@@ -84,6 +85,35 @@ public final class Directories {
     }
   }
 
+  /**
+   * Opens a directory, returning a {@link DirectoryStream} to iterate over
+   * the entries whose file names match a glob.
+   *
+   * <p>This method behaves like {@link Files#newDirectoryStream(Path, String)}.
+   * Unlike {@link Files#newDirectoryStream(Path, String)}, on a memory file
+   * system the glob is matched against the names of the entries before a
+   * path is created for them so large directories can be filtered cheaply.
+   * For other file systems this method delegates to
+   * {@link Files#newDirectoryStream(Path, String)}.</p>
+   *
+   * @see Files#newDirectoryStream(Path, String)
+   *
+   * @param directory the path to the directory
+   * @param glob the glob pattern
+   * @return a new and open {@code DirectoryStream} object
+   * @throws java.util.regex.PatternSyntaxException if the pattern is invalid
+   * @throws java.nio.file.NotDirectoryException if the file could not otherwise
+   *         be opened because it is not a directory
+   * @throws IOException if an I/O error occurs
+   */
+  public static DirectoryStream<Path> newDirectoryStream(Path directory, String glob) throws IOException {
+    if (directory instanceof AbstractPath) {
+      AbstractPath abstractPath = (AbstractPath) directory;
+      return abstractPath.getMemoryFileSystem().newDirectoryStream(abstractPath, glob);
+    }
+    return Files.newDirectoryStream(directory, glob);
+  }
+
   private static LinkOption[] linkOptions(CopyOption[] copyOptions) {
     return Options.isFollowSymLinks(copyOptions) ? NO_LINK_OPTIONS : NOFOLLOW_LINKS;
   }
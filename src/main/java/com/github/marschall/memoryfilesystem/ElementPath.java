@@ -15,6 +15,20 @@ abstract class ElementPath extends AbstractPath {
 
   abstract String getLastNameElement();
 
+  /**
+   * Returns the key under which a name element is stored in its directory.
+   *
+   * @param index the index of the name element
+   * @return the name element transformed for look ups
+   */
+  String getLookUpKey(int index) {
+    return this.getMemoryFileSystem().lookUpKey(this.getNameElement(index));
+  }
+
+  String getLastLookUpKey() {
+    return this.getLookUpKey(this.getNameCount() - 1);
+  }
+
   @Override
   int compareTo(AbstractPath other) {
     if (other.isRoot()) {
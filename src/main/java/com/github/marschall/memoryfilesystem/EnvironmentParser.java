@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 class EnvironmentParser {
 
@@ -263,6 +264,64 @@ class EnvironmentParser {
     return this.parseBooleanProperty(MemoryFileSystemProperties.FILE_CHANNEL_DIRECTORY_PROPERTY, false);
   }
 
+  BlockAllocator getBlockAllocator() {
+    boolean offHeap = this.parseBooleanProperty(MemoryFileSystemProperties.OFF_HEAP_PROPERTY, false);
+    Object value = this.env.get(MemoryFileSystemProperties.BLOCK_SIZE_PROPERTY);
+    if (value == null) {
+      return offHeap ? BlockAllocator.DIRECT : BlockAllocator.HEAP;
+    }
+    if (!(value instanceof Integer)) {
+      throw new IllegalArgumentException("value of " + MemoryFileSystemProperties.BLOCK_SIZE_PROPERTY
+              + " must be an instance of " + Integer.class + " but was " + value.getClass());
+    }
+    return new BlockAllocator(offHeap, (Integer) value);
+  }
+
+  LookUpCache getLookUpCache() {
+    Object value = this.env.get(MemoryFileSystemProperties.LOOK_UP_CACHE_SIZE_PROPERTY);
+    if (value == null) {
+      return new LookUpCache(0);
+    }
+    if (!(value instanceof Integer)) {
+      throw new IllegalArgumentException("value of " + MemoryFileSystemProperties.LOOK_UP_CACHE_SIZE_PROPERTY
+              + " must be an instance of " + Integer.class + " but was " + value.getClass());
+    }
+    return new LookUpCache((Integer) value);
+  }
+
+  int getWatchEventCapacity() {
+    Object value = this.env.get(MemoryFileSystemProperties.WATCH_EVENT_CAPACITY_PROPERTY);
+    if (value == null) {
+      return MemoryWatchKey.DEFAULT_EVENT_CAPACITY;
+    }
+    if (!(value instanceof Integer)) {
+      throw new IllegalArgumentException("value of " + MemoryFileSystemProperties.WATCH_EVENT_CAPACITY_PROPERTY
+              + " must be an instance of " + Integer.class + " but was " + value.getClass());
+    }
+    int capacity = (Integer) value;
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("value of " + MemoryFileSystemProperties.WATCH_EVENT_CAPACITY_PROPERTY
+              + " must be positive but was " + capacity);
+    }
+    return capacity;
+  }
+
+  ExecutorService getAsynchronousExecutor() {
+    Object value = this.env.get(MemoryFileSystemProperties.ASYNCHRONOUS_EXECUTOR_PROPERTY);
+    if (value == null) {
+      return null;
+    }
+    if (!(value instanceof ExecutorService)) {
+      throw new IllegalArgumentException("value of " + MemoryFileSystemProperties.ASYNCHRONOUS_EXECUTOR_PROPERTY
+              + " must be an instance of " + ExecutorService.class + " but was " + value.getClass());
+    }
+    return (ExecutorService) value;
+  }
+
+  boolean isSynchronousCompletion() {
+    return this.parseBooleanProperty(MemoryFileSystemProperties.SYNCHRONOUS_COMPLETION_PROPERTY, false);
+  }
+
   private boolean parseBooleanProperty(String key, boolean defaultValue) {
     Object value = this.env.get(key);
     if (value == null) {
@@ -9,4 +9,26 @@ interface FileSystemContext {
 
   Instant truncate(Instant instant);
 
+  BlockAllocator getBlockAllocator();
+
+  /**
+   * Called after a watch key was added to a directory.
+   */
+  void watchKeyAdded();
+
+  /**
+   * Called after watch keys were removed from a directory.
+   *
+   * @param count the number of watch keys removed
+   */
+  void watchKeysRemoved(int count);
+
+  /**
+   * Checks whether any directory of the file system is watched.
+   *
+   * @return {@code false} if no directory is watched and events don't have
+   *         to be signalled
+   */
+  boolean isWatched();
+
 }
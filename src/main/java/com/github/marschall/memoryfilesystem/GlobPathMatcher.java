@@ -2,69 +2,115 @@ package com.github.marschall.memoryfilesystem;
 
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Matches paths against a glob split into one pattern per name element.
+ *
+ * <p>The patterns are treated as a nondeterministic automaton whose state is
+ * the index of the next pattern to match. All states reachable after a name
+ * element are tracked at once so that every pattern is tried at most once
+ * per element and matching is linear in the number of elements, even with
+ * several {@code **} patterns.</p>
+ *
+ * <p>A {@code **} pattern matches one or more elements, trailing {@code **}
+ * patterns may also match no element.</p>
+ */
 final class GlobPathMatcher implements PathMatcher {
 
   private final boolean isAbsolute;
 
-  private final List<GlobPattern> patterns;
+  private final GlobPattern[] patterns;
+
+  // whether only ** patterns follow the pattern at the index, including it
+  private final boolean[] accepting;
 
   GlobPathMatcher(boolean isAbsolute, List<GlobPattern> matches) {
     this.isAbsolute = isAbsolute;
-    this.patterns = matches;
+    this.patterns = matches.toArray(new GlobPattern[0]);
+    int patternCount = this.patterns.length;
+    this.accepting = new boolean[patternCount + 1];
+    this.accepting[patternCount] = true;
+    for (int i = patternCount - 1; i >= 0; i--) {
+      this.accepting[i] = this.accepting[i + 1] && this.patterns[i].isCrossingDirectoryBoundaries();
+    }
   }
 
   @Override
   public boolean matches(Path path) {
-    if (this.isAbsolute && !path.isAbsolute()) {
-      return false;
+    AbstractPath abstractPath = MemoryFileSystemProvider.castPath(path);
+    // same as RegexAbsolutePathMatcher and RegexRelativePathMatcher
+    if (this.isAbsolute) {
+      abstractPath = (AbstractPath) abstractPath.toAbsolutePath();
+    } else if (abstractPath.isAbsolute()) {
+      AbstractPath defaultPath = abstractPath.getMemoryFileSystem().getDefaultPath();
+      abstractPath = (AbstractPath) defaultPath.relativize(abstractPath);
+    }
+    if (abstractPath instanceof ElementPath) {
+      return this.matches(((ElementPath) abstractPath).getNameElements());
     }
-    ElementPath elementPath = (ElementPath) path;
-    return this.matches(elementPath.getNameElements(), this.patterns);
+    // a root
+    return this.matches(Collections.<String>emptyList());
+  }
+
+  /**
+   * Matches the name of a directory entry against a relative glob.
+   *
+   * @param fileName the file name
+   * @return whether the relative path consisting only of the file name
+   *         matches
+   */
+  boolean matchesFileName(String fileName) {
+    return this.matches(Collections.singletonList(fileName));
   }
 
-  private boolean matches(List<String> elements, List<GlobPattern> patterns) {
+  boolean isAbsolute() {
+    return this.isAbsolute;
+  }
+
+  private boolean matches(List<String> elements) {
+    int patternCount = this.patterns.length;
     if (elements.isEmpty()) {
-      for (GlobPattern pattern : patterns) {
-        if (!pattern.isCrossingDirectoryBoundaries()) {
-          return false;
+      // the string of the path is empty, only a single pattern can match it
+      return patternCount == 1 && this.patterns[0].matches("");
+    }
+    boolean[] current = new boolean[patternCount + 1];
+    boolean[] next = new boolean[patternCount + 1];
+    current[0] = true;
+    for (int i = 0; i < elements.size(); i++) {
+      String element = elements.get(i);
+      boolean anyState = false;
+      for (int state = 0; state < patternCount; state++) {
+        if (!current[state]) {
+          continue;
+        }
+        GlobPattern pattern = this.patterns[state];
+        if (pattern.isCrossingDirectoryBoundaries()) {
+          // either stay to match more elements or move on
+          next[state] = true;
+          next[state + 1] = true;
+          anyState = true;
+        } else if (pattern.matches(element)) {
+          next[state + 1] = true;
+          anyState = true;
         }
       }
-      return true;
-    }
-
-    String element = elements.get(0);
-    if (elements.size() == 1) {
-      GlobPattern match = patterns.get(0);
-      if (!match.matches(element)) {
+      if (!anyState) {
         return false;
-      } else if (patterns.size() == 1) {
-        return true;
-      } else {
-        List<GlobPattern> remainingMatches = patterns.subList(1, patterns.size());
-        return this.matches(Collections.<String>emptyList(), remainingMatches);
       }
+      boolean[] swap = current;
+      current = next;
+      next = swap;
+      Arrays.fill(next, false);
     }
-
-    if (patterns.isEmpty()) {
-      return false;
-    }
-
-    GlobPattern firstMatch = patterns.get(0);
-    if (!firstMatch.isCrossingDirectoryBoundaries()) {
-      if (firstMatch.matches(element) && patterns.size() > 1) {
-        return this.matches(elements.subList(1, elements.size()), patterns.subList(1, patterns.size()));
-      } else {
-        return false;
+    for (int state = 0; state <= patternCount; state++) {
+      if (current[state] && this.accepting[state]) {
+        return true;
       }
-    } else {
-      List<String> remainingElements = elements.subList(1, elements.size());
-      return this.matches(remainingElements, patterns)
-              || this.matches(remainingElements, patterns.subList(1, patterns.size()));
     }
-
+    return false;
   }
 
   static String name() {
@@ -0,0 +1,113 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The locks held by the current thread while it looks up a path.
+ *
+ * <p>Every thread reuses a single stack so that looking up a path does not
+ * allocate. Lookups nest, a callback may look up another path while the
+ * locks of the outer lookup are held, so every lookup remembers the
+ * {@link #mark()} it started at and only releases the locks above it.</p>
+ *
+ * <p>Directories that are traversed without locking them are recorded
+ * together with their version so that the look up can be validated once
+ * the last entry is locked.</p>
+ */
+final class LockStack {
+
+  private static final ThreadLocal<LockStack> STACKS = ThreadLocal.withInitial(LockStack::new);
+
+  private Lock[] locks;
+
+  private int size;
+
+  private MemoryDirectory[] directories;
+
+  private long[] versions;
+
+  private int traversed;
+
+  private LockStack() {
+    this.locks = new Lock[16];
+    this.size = 0;
+    this.directories = new MemoryDirectory[16];
+    this.versions = new long[16];
+    this.traversed = 0;
+  }
+
+  static LockStack current() {
+    return STACKS.get();
+  }
+
+  int mark() {
+    return this.size;
+  }
+
+  /**
+   * Acquires the given lock and pushes it on the stack.
+   */
+  void push(Lock lock) {
+    if (this.size == this.locks.length) {
+      this.locks = Arrays.copyOf(this.locks, this.size * 2);
+    }
+    lock.lock();
+    this.locks[this.size++] = lock;
+  }
+
+  /**
+   * Releases the locks pushed since the given mark in reverse order.
+   */
+  void releaseTo(int mark) {
+    while (this.size > mark) {
+      this.size -= 1;
+      Lock lock = this.locks[this.size];
+      // don't keep entries reachable
+      this.locks[this.size] = null;
+      lock.unlock();
+    }
+  }
+
+  int traversedMark() {
+    return this.traversed;
+  }
+
+  /**
+   * Records a directory traversed without locking it.
+   */
+  void traversed(MemoryDirectory directory, long version) {
+    if (this.traversed == this.directories.length) {
+      this.directories = Arrays.copyOf(this.directories, this.traversed * 2);
+      this.versions = Arrays.copyOf(this.versions, this.traversed * 2);
+    }
+    this.directories[this.traversed] = directory;
+    this.versions[this.traversed] = version;
+    this.traversed += 1;
+  }
+
+  /**
+   * Returns the directories traversed since the given mark in the order
+   * they were traversed.
+   */
+  MemoryDirectory[] getTraversed(int mark) {
+    return Arrays.copyOfRange(this.directories, mark, this.traversed);
+  }
+
+  /**
+   * Checks whether none of the directories traversed since the given mark
+   * changed and forgets them.
+   */
+  boolean validateTraversed(int mark) {
+    boolean valid = true;
+    while (this.traversed > mark) {
+      this.traversed -= 1;
+      MemoryDirectory directory = this.directories[this.traversed];
+      // don't keep entries reachable
+      this.directories[this.traversed] = null;
+      valid &= directory.version() == this.versions[this.traversed];
+    }
+    return valid;
+  }
+
+}
@@ -0,0 +1,162 @@
+package com.github.marschall.memoryfilesystem;
+
+import static com.github.marschall.memoryfilesystem.AutoReleaseLock.autoRelease;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Maps normalized absolute paths to the entries they resolved to.
+ *
+ * <p>Only paths that were resolved without encountering a symbolic link
+ * are cached. Adding an entry to a directory can not change what such a
+ * path resolves to, only removing one can. Every entry counts how often
+ * it was removed from a directory, a cached path is only used if none of
+ * the directories on the path nor the entry itself has been removed since
+ * it was looked up. Deleting or moving an entry therefore only invalidates
+ * the paths to the entry and below it.</p>
+ *
+ * <p>Once the cache is full entries are evicted with the clock algorithm,
+ * entries hit since the hand last passed them get a second chance.</p>
+ */
+final class LookUpCache {
+
+  static final String HITS_ATTRIBUTE = "lookUpCache:hits";
+
+  static final String MISSES_ATTRIBUTE = "lookUpCache:misses";
+
+  private final int maximumSize;
+
+  private final ConcurrentMap<AbstractPath, CachedEntry> entries;
+
+  private final Lock evictionLock;
+
+  // the hand of the clock, guarded by evictionLock
+  private Iterator<CachedEntry> hand;
+
+  private final LongAdder hits;
+
+  private final LongAdder misses;
+
+  LookUpCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximum size must not be negative but was " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    this.entries = maximumSize > 0 ? new ConcurrentHashMap<>() : null;
+    this.evictionLock = new ReentrantLock();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+  }
+
+  boolean isEnabled() {
+    return this.entries != null;
+  }
+
+  /**
+   * Returns the entry a path resolved to.
+   *
+   * @param path the normalized absolute path
+   * @return the cached entry, {@code null} if the path is not cached or
+   *         the entry or a directory on the path was removed since it was
+   *         cached
+   */
+  CachedEntry get(AbstractPath path) {
+    CachedEntry cached = this.entries.get(path);
+    if (cached != null) {
+      if (cached.isValid()) {
+        cached.referenced = true;
+        this.hits.increment();
+        return cached;
+      }
+      this.entries.remove(path, cached);
+    }
+    this.misses.increment();
+    return null;
+  }
+
+  void put(AbstractPath path, CachedEntry cached) {
+    if (this.entries.size() >= this.maximumSize) {
+      this.evict();
+    }
+    this.entries.put(path, cached);
+  }
+
+  private void evict() {
+    try (AutoRelease lock = autoRelease(this.evictionLock)) {
+      while (this.entries.size() >= this.maximumSize) {
+        if (this.hand == null || !this.hand.hasNext()) {
+          this.hand = this.entries.values().iterator();
+          if (!this.hand.hasNext()) {
+            return;
+          }
+        }
+        CachedEntry candidate = this.hand.next();
+        if (candidate.referenced && candidate.isValid()) {
+          candidate.referenced = false;
+        } else {
+          this.hand.remove();
+        }
+      }
+    }
+  }
+
+  long getHits() {
+    return this.hits.sum();
+  }
+
+  long getMisses() {
+    return this.misses.sum();
+  }
+
+  static final class CachedEntry {
+
+    final MemoryEntry entry;
+
+    // the directories traversed to get to the entry, starting with the root
+    final MemoryDirectory[] directories;
+
+    // the removal count of the entry followed by the ones of the
+    // directories after the root, the root can not be removed
+    private final int[] removals;
+
+    // whether the entry was hit since the hand of the clock last passed it
+    volatile boolean referenced;
+
+    /**
+     * Creates a cache entry, has to be called after the entry was looked up
+     * but before the directories are validated.
+     */
+    CachedEntry(MemoryEntry entry, MemoryDirectory[] directories) {
+      this.entry = entry;
+      this.directories = directories;
+      this.removals = new int[Math.max(directories.length, 1)];
+      this.removals[0] = entry.removals();
+      for (int i = 1; i < directories.length; i++) {
+        this.removals[i] = directories[i].removals();
+      }
+    }
+
+    /**
+     * Checks whether neither the entry nor a directory on the path was
+     * removed since the entry was cached.
+     */
+    boolean isValid() {
+      if (this.entry.removals() != this.removals[0]) {
+        return false;
+      }
+      for (int i = 1; i < this.directories.length; i++) {
+        if (this.directories[i].removals() != this.removals[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
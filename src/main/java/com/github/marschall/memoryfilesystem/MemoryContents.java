@@ -37,6 +37,10 @@ interface MemoryContents {
 
   void truncate(long newSize);
 
+  long nextData(long position);
+
+  long nextHole(long position);
+
   void unlock(MemoryFileLock lock);
 
   MemoryFileLock lock(MemoryFileLock lock) throws IOException;
@@ -9,19 +9,56 @@ import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent.Kind;
 import java.nio.file.attribute.BasicFileAttributeView;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Predicate;
 
+/**
+ * A directory, the entries are kept in a concurrent map.
+ *
+ * <p>Adding and removing a single entry only needs the read lock of the
+ * directory so that files can be created and deleted concurrently in the
+ * same directory. The write lock is taken by operations that need the
+ * entries not to change, like moving entries in or out of the directory
+ * and deleting the directory itself. Looking up an entry needs no lock at
+ * all, see {@link #version()}.</p>
+ *
+ * <p>Watch keys are registered directly with the directory, adding and
+ * removing entries signals them without any polling.</p>
+ */
 class MemoryDirectory extends MemoryEntry {
 
+  private static final AtomicLongFieldUpdater<MemoryDirectory> VERSION_UPDATER =
+          AtomicLongFieldUpdater.newUpdater(MemoryDirectory.class, "version");
+
+  private static final AtomicReferenceFieldUpdater<MemoryDirectory, MemoryWatchKey[]> WATCH_KEYS_UPDATER =
+          AtomicReferenceFieldUpdater.newUpdater(MemoryDirectory.class, MemoryWatchKey[].class, "watchKeys");
+
+  private static final MemoryWatchKey[] NO_WATCH_KEYS = new MemoryWatchKey[0];
+
   private final Map<String, MemoryEntry> entries;
 
+  /**
+   * Incremented after every change to {@link #entries}.
+   */
+  private volatile long version;
+
+  /**
+   * The keys watching this directory, copied on write.
+   */
+  private volatile MemoryWatchKey[] watchKeys;
+
   MemoryDirectory(String originalName, EntryCreationContext context) {
     super(originalName, context);
-    this.entries = new HashMap<>();
+    this.entries = new ConcurrentHashMap<>();
+    this.watchKeys = NO_WATCH_KEYS;
   }
 
   @Override
@@ -29,15 +66,11 @@ class MemoryDirectory extends MemoryEntry {
     return new MemoryDirectoryAttributes(context);
   }
 
-  DirectoryStream<Path> newDirectoryStream(Path basePath, Filter<? super Path> filter) throws AccessDeniedException {
-    // REVIEW simply copying is not super scalable
-    // REVIEW eager filtering might be nice
+  DirectoryStream<Path> newDirectoryStream(AbstractPath basePath, Predicate<String> nameFilter, Filter<? super Path> filter) throws AccessDeniedException {
     this.checkAccess(AccessMode.EXECUTE);
-    List<String> elements = new ArrayList<>(this.entries.size());
-    for (MemoryEntry entry : this.entries.values()) {
-      elements.add(entry.getOriginalName());
-    }
-    return new MemoryDirectoryStream(basePath, filter, elements);
+    // the entries are read while iterating instead of being copied up front,
+    // the iterator is weakly consistent as allowed by DirectoryStream
+    return new MemoryDirectoryStream(basePath, nameFilter, filter, new OriginalNameIterator(this.entries.values().iterator()));
   }
 
   MemoryEntry getEntry(String name) {
@@ -45,6 +78,19 @@ class MemoryDirectory extends MemoryEntry {
     return this.entries.get(name);
   }
 
+  /**
+   * Returns the version of the entries, used to look up entries without
+   * holding the lock of the directory.
+   *
+   * <p>An entry returned by {@link #getEntry(String)} is still present if
+   * the version read before the look up is the same as the one read after.
+   * Since the version is incremented before the entry to be removed is
+   * unlocked it is enough to read it after locking the entry.</p>
+   */
+  long version() {
+    return this.version;
+  }
+
   MemoryEntry getEntryOrException(String name, Path path) throws IOException {
     this.checkAccess(AccessMode.EXECUTE);
     MemoryEntry entry = this.getEntry(name);
@@ -73,14 +119,26 @@ class MemoryDirectory extends MemoryEntry {
   // we can't do it here because that may break operations that involve
   // two directories
   void addEntry(String name, MemoryEntry entry, Path originalPath) throws IOException {
-    MemoryEntry previous = this.entries.put(name, entry);
+    MemoryEntry previous = this.addEntryIfAbsent(name, entry);
     if (previous != null) {
-      // avoid double look up in common case
-      // fix if we broke it
-      this.entries.put(name, previous);
       throw new FileAlreadyExistsException(originalPath.toString());
     }
-    this.modified();
+  }
+
+  /**
+   * Adds an entry unless there already is one with the same name.
+   *
+   * @return the entry already present, {@code null} if the entry was added
+   */
+  MemoryEntry addEntryIfAbsent(String name, MemoryEntry entry) {
+    MemoryEntry previous = this.entries.putIfAbsent(name, entry);
+    if (previous == null) {
+      VERSION_UPDATER.incrementAndGet(this);
+      entry.setParent(this);
+      this.modified();
+      this.signal(StandardWatchEventKinds.ENTRY_CREATE, entry.getOriginalName());
+    }
+    return previous;
   }
 
   @Override
@@ -92,9 +150,120 @@ class MemoryDirectory extends MemoryEntry {
   // we can't do it here because that may break operations that involve
   // two directories
   void removeEntry(String name) {
-    // TODO check for result
-    this.entries.remove(name);
+    MemoryEntry removed = this.entries.remove(name);
+    VERSION_UPDATER.incrementAndGet(this);
     this.modified();
+    if (removed != null) {
+      // after the version so that a look up that saw the entry either
+      // fails validation or cached the previous count
+      removed.removed();
+      if (removed.getParent() == this) {
+        removed.setParent(null);
+      }
+      this.signal(StandardWatchEventKinds.ENTRY_DELETE, removed.getOriginalName());
+    }
+  }
+
+  /**
+   * Signals an event for an entry of this directory to the keys watching it.
+   *
+   * @param kind the kind of the event
+   * @param name the original name of the entry
+   */
+  void signal(Kind<Path> kind, String name) {
+    if (!this.getFileSystem().isWatched()) {
+      // no need to walk the ancestors looking for keys
+      return;
+    }
+    for (MemoryWatchKey watchKey : this.watchKeys) {
+      watchKey.signal(kind, this, name);
+    }
+    MemoryDirectory ancestor = this.getParent();
+    while (ancestor != null) {
+      for (MemoryWatchKey watchKey : ancestor.watchKeys) {
+        if (watchKey.isFileTree()) {
+          watchKey.signal(kind, this, name);
+        }
+      }
+      ancestor = ancestor.getParent();
+    }
+  }
+
+  /**
+   * Adds a watch key unless the watch service of the key already
+   * registered for this directory.
+   *
+   * @return the key already registered by the watch service, {@code null}
+   *         if the key was added
+   */
+  MemoryWatchKey addWatchKeyIfAbsent(MemoryWatchKey watchKey) {
+    MemoryWatchKey[] current;
+    MemoryWatchKey[] updated;
+    do {
+      current = this.watchKeys;
+      for (MemoryWatchKey each : current) {
+        if (each.getWatcher() == watchKey.getWatcher()) {
+          return each;
+        }
+      }
+      updated = Arrays.copyOf(current, current.length + 1);
+      updated[current.length] = watchKey;
+    } while (!WATCH_KEYS_UPDATER.compareAndSet(this, current, updated));
+    this.getFileSystem().watchKeyAdded();
+    return null;
+  }
+
+  void removeWatchKey(MemoryWatchKey watchKey) {
+    MemoryWatchKey[] current;
+    MemoryWatchKey[] updated;
+    do {
+      current = this.watchKeys;
+      int index = Arrays.asList(current).indexOf(watchKey);
+      if (index == -1) {
+        return;
+      }
+      updated = new MemoryWatchKey[current.length - 1];
+      System.arraycopy(current, 0, updated, 0, index);
+      System.arraycopy(current, index + 1, updated, index, updated.length - index);
+    } while (!WATCH_KEYS_UPDATER.compareAndSet(this, current, updated));
+    this.getFileSystem().watchKeysRemoved(1);
+  }
+
+  /**
+   * Invalidates the keys watching this directory, has to be called after
+   * the directory is deleted.
+   */
+  void invalidateWatchKeys() {
+    MemoryWatchKey[] current = WATCH_KEYS_UPDATER.getAndSet(this, NO_WATCH_KEYS);
+    if (current.length > 0) {
+      this.getFileSystem().watchKeysRemoved(current.length);
+    }
+    for (MemoryWatchKey watchKey : current) {
+      watchKey.invalidate();
+    }
+  }
+
+  /**
+   * Returns the original names of entries.
+   */
+  static final class OriginalNameIterator implements Iterator<String> {
+
+    private final Iterator<MemoryEntry> entries;
+
+    OriginalNameIterator(Iterator<MemoryEntry> entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.entries.hasNext();
+    }
+
+    @Override
+    public String next() {
+      return this.entries.next().getOriginalName();
+    }
+
   }
 
   static final class MemoryDirectoryAttributes extends MemoryEntryAttributes {
@@ -5,11 +5,11 @@ import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 final class MemoryDirectoryStream implements DirectoryStream<Path> {
 
@@ -18,6 +18,10 @@ final class MemoryDirectoryStream implements DirectoryStream<Path> {
   static final AtomicIntegerFieldUpdater<MemoryDirectoryStream> STATE_UPDATER =
           AtomicIntegerFieldUpdater.newUpdater(MemoryDirectoryStream.class, "state");
 
+  static final Filter<Path> ACCEPT_ALL = entry -> true;
+
+  static final Predicate<String> ALL_NAMES = name -> true;
+
   private static final int CLOSED = 2;
   private static final int OPEN_ITERATOR_CALLED = 1;
   private static final int OPEN_ITERATOR_NOT_CALLED = 0;
@@ -27,11 +31,12 @@ final class MemoryDirectoryStream implements DirectoryStream<Path> {
 
   private final MemoryDirectoryIterator iterator;
 
-  MemoryDirectoryStream(Path basePath, Filter<? super Path> filter, List<String> elements) {
+  MemoryDirectoryStream(AbstractPath basePath, Predicate<String> nameFilter, Filter<? super Path> filter, Iterator<String> elements) {
     Objects.requireNonNull(basePath, "basePath");
+    Objects.requireNonNull(nameFilter, "nameFilter");
     Objects.requireNonNull(filter, "filter");
     Objects.requireNonNull(elements, "elements");
-    this.iterator = new MemoryDirectoryIterator(basePath, filter, elements);
+    this.iterator = new MemoryDirectoryIterator(basePath, nameFilter, filter, elements);
     STATE_UPDATER.set(this, OPEN_ITERATOR_NOT_CALLED);
   }
 
@@ -60,32 +65,49 @@ final class MemoryDirectoryStream implements DirectoryStream<Path> {
 
   static final class MemoryDirectoryIterator implements Iterator<Path> {
 
-    private final Path basePath;
+    private final AbstractPath basePath;
     private final Iterator<String> iterator;
     private Path next;
+    private final Predicate<String> nameFilter;
     private final Filter<? super Path> filter;
 
-    MemoryDirectoryIterator(Path basePath, Filter<? super Path> filter, List<String> elements) {
+    MemoryDirectoryIterator(AbstractPath basePath, Predicate<String> nameFilter, Filter<? super Path> filter, Iterator<String> elements) {
       Objects.requireNonNull(basePath, "basePath");
+      Objects.requireNonNull(nameFilter, "nameFilter");
       Objects.requireNonNull(filter, "filter");
       Objects.requireNonNull(elements, "elements");
       this.basePath = basePath;
+      this.nameFilter = nameFilter;
       this.filter = filter;
-      this.iterator = elements.iterator();
+      this.iterator = elements;
     }
 
     private void setNext() {
+      this.next = this.nextAccepted();
+    }
+
+    /**
+     * Returns the next entry accepted by both filters, {@code null} if
+     * there is none.
+     */
+    private Path nextAccepted() {
       while (this.iterator.hasNext()) {
-        Path path = this.basePath.resolve(this.iterator.next());
+        String name = this.iterator.next();
+        // no path is created for names that are filtered out
+        if (!this.nameFilter.test(name)) {
+          continue;
+        }
+        // the stored name is a valid single element, no need to parse it
+        Path path = this.basePath.resolve(AbstractPath.createRelative(this.basePath.getMemoryFileSystem(), name));
         try {
           if (this.filter.accept(path)) {
-            this.next = path;
-            break;
+            return path;
           }
         } catch (IOException e) {
           throw new DirectoryIteratorException(e);
         }
       }
+      return null;
     }
 
     @Override
@@ -110,22 +132,12 @@ final class MemoryDirectoryStream implements DirectoryStream<Path> {
         return;
       }
       try {
-        try {
-          if (this.filter.accept(this.next)) {
-            action.accept(this.next);
-          }
-        } catch (IOException e) {
-          throw new DirectoryIteratorException(e);
-        }
-        while (this.iterator.hasNext()) {
-          Path path = this.basePath.resolve(this.iterator.next());
-          try {
-            if (this.filter.accept(path)) {
-              action.accept(path);
-            }
-          } catch (IOException e) {
-            throw new DirectoryIteratorException(e);
-          }
+        // already accepted by the filters
+        action.accept(this.next);
+        Path path = this.nextAccepted();
+        while (path != null) {
+          action.accept(path);
+          path = this.nextAccepted();
         }
       } finally {
         this.next = null;
@@ -8,16 +8,30 @@ import java.nio.file.AccessMode;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttributeView;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 abstract class MemoryEntry {
 
+  private static final AtomicIntegerFieldUpdater<MemoryEntry> REMOVALS_UPDATER =
+          AtomicIntegerFieldUpdater.newUpdater(MemoryEntry.class, "removals");
+
   // can be changed by a move/rename
   // not protected by a lock because we need it in #toString
   private volatile String originalName;
   private final MemoryEntryAttributes attributes;
 
+  // the directory this entry was last added to, used to dispatch watch events
+  private volatile MemoryDirectory parent;
+
+  /**
+   * Incremented every time the entry is removed from a directory, cached
+   * look ups through the entry are no longer valid.
+   */
+  private volatile int removals;
+
   private final ReadWriteLock lock;
 
   MemoryEntry(String originalName, EntryCreationContext context) {
@@ -47,6 +61,25 @@ abstract class MemoryEntry {
     return this.originalName;
   }
 
+  MemoryDirectory getParent() {
+    return this.parent;
+  }
+
+  void setParent(MemoryDirectory parent) {
+    this.parent = parent;
+  }
+
+  int removals() {
+    return this.removals;
+  }
+
+  /**
+   * Called after the entry has been removed from a directory.
+   */
+  void removed() {
+    REMOVALS_UPDATER.incrementAndGet(this);
+  }
+
   long getNow() {
     return System.currentTimeMillis();
   }
@@ -72,6 +105,25 @@ abstract class MemoryEntry {
     }
   }
 
+  /**
+   * Returns the lock of the given type without acquiring it, used for
+   * path lookups, see {@link LockStack}.
+   */
+  Lock getLock(LockType lockType) {
+    switch (lockType) {
+      case READ:
+        return this.lock.readLock();
+      case WRITE:
+        return this.lock.writeLock();
+      default:
+        throw new IllegalArgumentException("unknown lock type");
+    }
+  }
+
+  Lock getReadLock() {
+    return this.lock.readLock();
+  }
+
   void checkAccess(AccessMode... modes) throws AccessDeniedException {
     this.attributes.checkAccess(modes);
   }
@@ -88,6 +140,10 @@ abstract class MemoryEntry {
     this.attributes.modified();
   }
 
+  FileSystemContext getFileSystem() {
+    return this.attributes.getFileSystem();
+  }
+
   void accessed() {
     this.attributes.accessed();
   }
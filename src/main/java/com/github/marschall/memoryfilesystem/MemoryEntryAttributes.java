@@ -116,6 +116,10 @@ abstract class MemoryEntryAttributes {
     return FileTime.from(this.creationTime);
   }
 
+  FileSystemContext getFileSystem() {
+    return this.fileSystem;
+  }
+
   private Instant getNow() {
     return this.truncate(Instant.now());
   }
@@ -263,11 +267,16 @@ abstract class MemoryEntryAttributes {
   }
 
   void checkAccess(AccessMode mode) throws AccessDeniedException {
+    AccessMode unsupported = this.getUnsupported(mode);
+    if (unsupported != null) {
+      throw new UnsupportedOperationException("access mode " + unsupported + " is not supported");
+    }
+    if (this.additionalViews.isEmpty()) {
+      // no access check views -> default allow
+      // don't lock, path look ups check every directory on the way
+      return;
+    }
     try (AutoRelease lock = this.readLock()) {
-      AccessMode unsupported = this.getUnsupported(mode);
-      if (unsupported != null) {
-        throw new UnsupportedOperationException("access mode " + unsupported + " is not supported");
-      }
       for (Object attributeView : this.additionalViews.values()) {
         if (attributeView instanceof AccessCheck) {
           AccessCheck accessCheck = (AccessCheck) attributeView;
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessMode;
@@ -18,6 +19,7 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.util.Arrays;
 import java.util.Set;
@@ -28,14 +30,19 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
 
   /**
    * The number of open streams or channels.
-   *
-   * <p>A negative number indicates the file is marked for deletion.
    */
   private int openCount;
 
+  /**
+   * Whether the file has been deleted or replaced, no streams or channels
+   * can be opened any more but the ones already open stay usable.
+   */
+  private boolean markedForDeletion;
+
   /**
    * In other to implement hard links we allow sharing hard links.
-   * We do not need a hard link counter since we have a garbage collector.
+   * The inode counts its hard links and releases its blocks once the
+   * last one is deleted and closed.
    */
   private final MemoryInode inode;
 
@@ -46,7 +53,7 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
   MemoryFile(String originalName, EntryCreationContext context, int initialBlocks) {
     super(originalName, context);
     this.openCount = 0;
-    this.inode = new MemoryInode(initialBlocks);
+    this.inode = new MemoryInode(context.fileSystem.getBlockAllocator(), initialBlocks);
   }
 
   /**
@@ -55,7 +62,7 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
   MemoryFile(String originalName, EntryCreationContext context, MemoryFile other) {
     super(originalName, context);
     this.openCount = 0;
-    this.inode = new MemoryInode(other.inode);
+    this.inode = new MemoryInode(context.fileSystem.getBlockAllocator(), other.inode);
   }
 
   /**
@@ -68,7 +75,9 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
   }
 
   MemoryFile createLink(String originalName, EntryCreationContext context) {
-    return new MemoryFile(originalName, context, this.inode, this);
+    MemoryFile link = new MemoryFile(originalName, context, this.inode, this);
+    this.inode.linked(this, link);
+    return link;
   }
 
   @Override
@@ -201,10 +210,11 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
   }
 
   private void incrementOpenCount(Path path) throws NoSuchFileException {
-    if (this.openCount < 0) {
+    if (this.markedForDeletion) {
       throw new NoSuchFileException(path.toString());
     }
     this.openCount += 1;
+    this.inode.opened();
   }
 
   int openCount() {
@@ -212,13 +222,21 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
   }
 
   void markForDeletion() {
-    this.openCount = -1;
+    this.markedForDeletion = true;
+  }
+
+  /**
+   * Called after the file has been removed from its directory.
+   */
+  void unlinked() {
+    this.inode.unlinked(this);
   }
 
   @Override
   public void closedStream(Path path, boolean delete) {
     try (AutoRelease lock = this.writeLock()) {
       this.openCount -= 1;
+      this.inode.closed();
     }
     if (delete) {
       // intentionally not covered by Lock
@@ -234,6 +252,7 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
   public void closedChannel(Path path, boolean delete) {
     try (AutoRelease lock = this.writeLock()) {
       this.openCount -= 1;
+      this.inode.closed();
     }
     if (delete) {
       // intentionally not covered by Lock
@@ -262,14 +281,37 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
 
   @Override
   public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
-    return this.inode.transferFrom(src, position, count);
+    long written;
+    if (this.isSameInode(src)) {
+      written = this.inode.transferFromSelf(src, position, count);
+    } else {
+      written = this.inode.transferFrom(src, position, count);
+    }
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public long transferTo(WritableByteChannel target, long position, long count) throws IOException {
+    if (this.isSameInode(target)) {
+      return this.inode.transferToSelf(target, position, count);
+    }
     return this.inode.transferTo(target, position, count);
   }
 
+  /**
+   * Whether the channel is open on this file or a hard link to it.
+   */
+  private boolean isSameInode(Channel channel) {
+    if (channel instanceof BlockChannel) {
+      MemoryContents contents = ((BlockChannel) channel).memoryContents;
+      return contents instanceof MemoryFile && ((MemoryFile) contents).inode == this.inode;
+    }
+    return false;
+  }
+
   @Override
   public long transferTo(OutputStream target, long position) throws IOException {
     return this.inode.transferTo(target, position);
@@ -277,37 +319,95 @@ class MemoryFile extends MemoryEntry implements MemoryContents {
 
   @Override
   public long write(ByteBuffer src, long position, long maximum) {
-    return this.inode.write(src, position, maximum);
+    long written = this.inode.write(src, position, maximum);
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public int writeShort(ByteBuffer src, long position) {
-    return this.inode.writeShort(src, position);
+    int written = this.inode.writeShort(src, position);
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public int write(byte[] src, long position, int off, int len) {
-    return this.inode.write(src, position, off, len);
+    int written = this.inode.write(src, position, off, len);
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public long writeAtEnd(ByteBuffer src, long maximum) {
-    return this.inode.writeAtEnd(src, maximum);
+    long written = this.inode.writeAtEnd(src, maximum);
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public int writeAtEnd(ByteBuffer src) {
-    return this.inode.writeAtEnd(src);
+    int written = this.inode.writeAtEnd(src);
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public int writeAtEnd(byte[] src, int off, int len) {
-    return this.inode.writeAtEnd(src, off, len);
+    int written = this.inode.writeAtEnd(src, off, len);
+    if (written > 0) {
+      this.signalModified();
+    }
+    return written;
   }
 
   @Override
   public void truncate(long newSize) {
-    this.inode.truncate(newSize);
+    if (this.inode.truncate(newSize)) {
+      this.signalModified();
+    }
+  }
+
+  private void signalModified() {
+    if (!this.getFileSystem().isWatched()) {
+      return;
+    }
+    MemoryFile[] links = this.inode.getLinks();
+    if (links == null) {
+      signalModified(this);
+    } else {
+      // every directory containing a hard link sees the modification
+      for (MemoryFile link : links) {
+        signalModified(link);
+      }
+    }
+  }
+
+  private static void signalModified(MemoryFile link) {
+    MemoryDirectory parent = link.getParent();
+    if (parent != null) {
+      parent.signal(StandardWatchEventKinds.ENTRY_MODIFY, link.getOriginalName());
+    }
+  }
+
+  @Override
+  public long nextData(long position) {
+    return this.inode.nextData(position);
+  }
+
+  @Override
+  public long nextHole(long position) {
+    return this.inode.nextHole(position);
   }
 
   @Override
@@ -11,9 +11,15 @@ class MemoryFileStore extends FileStore {
 
   private final ClosedFileSystemChecker checker;
 
-  MemoryFileStore(String key, ClosedFileSystemChecker checker) {
+  private final int blockSize;
+
+  private final LookUpCache lookUpCache;
+
+  MemoryFileStore(String key, ClosedFileSystemChecker checker, int blockSize, LookUpCache lookUpCache) {
     this.key = key;
     this.checker = checker;
+    this.blockSize = blockSize;
+    this.lookUpCache = lookUpCache;
   }
 
 
@@ -40,7 +46,7 @@ class MemoryFileStore extends FileStore {
   // since 10
   public long getBlockSize() {
     this.checker.check();
-    return MemoryInode.BLOCK_SIZE;
+    return this.blockSize;
   }
 
   @Override
@@ -88,7 +94,14 @@ class MemoryFileStore extends FileStore {
   @Override
   public Object getAttribute(String attribute) {
     this.checker.check();
-    throw new UnsupportedOperationException();
+    switch (attribute) {
+      case LookUpCache.HITS_ATTRIBUTE:
+        return this.lookUpCache.getHits();
+      case LookUpCache.MISSES_ATTRIBUTE:
+        return this.lookUpCache.getMisses();
+      default:
+        throw new UnsupportedOperationException("'" + attribute + "' not recognized");
+    }
   }
 
   String getKey() {
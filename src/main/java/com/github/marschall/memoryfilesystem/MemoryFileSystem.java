@@ -1,6 +1,7 @@
 package com.github.marschall.memoryfilesystem;
 
 import static com.github.marschall.memoryfilesystem.AutoReleaseLock.autoRelease;
+import static java.nio.file.AccessMode.READ;
 import static java.nio.file.AccessMode.WRITE;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.CREATE_NEW;
@@ -13,6 +14,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.AccessMode;
 import java.nio.file.CopyOption;
 import java.nio.file.DirectoryStream;
@@ -30,6 +32,7 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -43,10 +46,13 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.nio.file.attribute.UserPrincipal;
 import java.nio.file.spi.FileSystemProvider;
+import java.text.CollationKey;
 import java.text.Collator;
+import java.text.RuleBasedCollator;
 import java.time.Instant;
 import java.time.temporal.TemporalUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -58,11 +64,12 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
@@ -88,7 +95,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
   private volatile Map<String, Root> rootByKey;
 
-  private final ConcurrentMap<AbsolutePath, List<MemoryWatchKey>> watchKeys;
+  private final Set<MemoryFileSystemWatchService> watchServices;
 
   private volatile AbstractPath defaultPath;
 
@@ -106,6 +113,12 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
   private final Collator collator;
 
+  // whether names equal under the collator are always equal strings
+  private final boolean identityCollator;
+
+  // whether name elements are used as look up keys without transformation
+  private final boolean identityLookUp;
+
   private final Set<Class<? extends FileAttributeView>> additionalViews;
 
   private final Set<String> supportedFileAttributeViews;
@@ -125,6 +138,19 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
   private final boolean supportFileChannelOnDirectory;
 
+  private final BlockAllocator blockAllocator;
+
+  private final LookUpCache lookUpCache;
+
+  private final int watchEventCapacity;
+
+  // the number of watch keys registered for directories
+  private final AtomicInteger watchKeyCount;
+
+  private final ExecutorService asynchronousExecutor;
+
+  private final boolean synchronousCompletion;
+
   static {
     Set<String> unsupported = new HashSet<>(3);
     unsupported.add("lastAccessTime");
@@ -137,7 +163,9 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
   MemoryFileSystem(String key, String separator, PathParser pathParser, MemoryFileSystemProvider provider, MemoryFileStore store,
           MemoryUserPrincipalLookupService userPrincipalLookupService, ClosedFileSystemChecker checker, StringTransformer storeTransformer,
           StringTransformer lookUpTransformer, Collator collator, Set<Class<? extends FileAttributeView>> additionalViews,
-          Set<PosixFilePermission> umask, TemporalUnit resolution, boolean supportDirectoryFileChannelHack) {
+          Set<PosixFilePermission> umask, TemporalUnit resolution, boolean supportDirectoryFileChannelHack,
+          BlockAllocator blockAllocator, LookUpCache lookUpCache, int watchEventCapacity,
+          ExecutorService asynchronousExecutor, boolean synchronousCompletion) {
     this.key = key;
     this.separator = separator;
     this.pathParser = pathParser;
@@ -148,17 +176,33 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     this.storeTransformer = storeTransformer;
     this.lookUpTransformer = lookUpTransformer;
     this.collator = collator;
+    this.identityCollator = isIdentity(collator);
+    this.identityLookUp = lookUpTransformer instanceof StringTransformers.IdentityTransformer;
     this.additionalViews = additionalViews;
     this.umask = umask;
     this.resolution = resolution;
     this.supportFileChannelOnDirectory = supportDirectoryFileChannelHack;
+    this.blockAllocator = blockAllocator;
+    this.lookUpCache = lookUpCache;
+    this.watchEventCapacity = watchEventCapacity;
+    this.watchKeyCount = new AtomicInteger();
+    this.asynchronousExecutor = asynchronousExecutor;
+    this.synchronousCompletion = synchronousCompletion;
     this.stores = Collections.<FileStore>singletonList(store);
-    this.watchKeys = new ConcurrentHashMap<>(1);
+    this.watchServices = ConcurrentHashMap.newKeySet();
     this.emptyPath = new EmptyPath(this);
     this.supportedFileAttributeViews = this.buildSupportedFileAttributeViews(additionalViews);
     this.pathOrderingLock = new ReentrantReadWriteLock();
   }
 
+  private static boolean isIdentity(Collator collator) {
+    // an identical strength rule based collator compares the undecomposed
+    // strings once all collation elements are equal
+    return collator instanceof RuleBasedCollator
+            && collator.getStrength() == Collator.IDENTICAL
+            && collator.getDecomposition() == Collator.NO_DECOMPOSITION;
+  }
+
   private Set<String> buildSupportedFileAttributeViews(Set<Class<? extends FileAttributeView>> additionalViews) {
     if (additionalViews.isEmpty()) {
       return Collections.singleton(FileAttributeViews.BASIC);
@@ -214,6 +258,20 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     return this.userPrincipalLookupService.lookupPrincipalByGroupName(user.getName());
   }
 
+  /**
+   * Returns the executor of asynchronous file channels opened without an
+   * executor.
+   *
+   * @return the configured executor, {@code null} to use the default one
+   */
+  ExecutorService getAsynchronousExecutor() {
+    return this.asynchronousExecutor;
+  }
+
+  boolean isSynchronousCompletion() {
+    return this.synchronousCompletion;
+  }
+
   EmptyPath getEmptyPath() {
     return this.emptyPath;
   }
@@ -330,14 +388,13 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     }
 
     AbstractPath parent = (AbstractPath) absolutePath.getParent();
-    return this.withWriteLockOnLastDo(rootDirectory, parent, followSymLinks, encounteredSymlinks, new MemoryDirectoryBlock<GetEntryResult>() {
+    return this.withEntriesLockOnLastDo(rootDirectory, parent, followSymLinks, encounteredSymlinks, new MemoryDirectoryBlock<GetEntryResult>() {
 
       @Override
       public GetEntryResult value(MemoryDirectory directory) throws IOException {
         ElementPath elementPath = (ElementPath) absolutePath;
         boolean isCreateNew = options.contains(CREATE_NEW);
-        String fileName = elementPath.getLastNameElement();
-        String key = MemoryFileSystem.this.lookUpTransformer.transform(fileName);
+        String key = elementPath.getLastLookUpKey();
 
         EntryCreationContext creationContext = MemoryFileSystem.this.newEntryCreationContext(absolutePath, newAttributes);
         if (isCreateNew) {
@@ -349,8 +406,12 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
           if (storedEntry == null) {
             boolean isCreate = options.contains(CREATE);
             if (isCreate) {
-              MemoryFile file = this.createEntryOnAccess(path, newAttributes, directory, elementPath, creationContext);
-              return new GetEntryResult(file);
+              MemoryFile file = this.newEntryOnAccess(newAttributes, directory, elementPath, creationContext);
+              // may have been created concurrently, then open that one
+              storedEntry = directory.addEntryIfAbsent(key, file);
+              if (storedEntry == null) {
+                return new GetEntryResult(file);
+              }
             } else {
               throw new NoSuchFileException(path.toString());
             }
@@ -375,15 +436,20 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
       private MemoryFile createEntryOnAccess(AbstractPath path, FileAttribute<?>[] newAttributes, MemoryDirectory directory,
               ElementPath elementPath, EntryCreationContext creationContext) throws IOException {
-        String fileName = elementPath.getLastNameElement();
-        String key = MemoryFileSystem.this.lookUpTransformer.transform(fileName);
-        String name = MemoryFileSystem.this.storeTransformer.transform(fileName);
+        String key = elementPath.getLastLookUpKey();
+        MemoryFile file = this.newEntryOnAccess(newAttributes, directory, elementPath, creationContext);
+        // will throw an exception if already present
+        directory.addEntry(key, file, path);
+        return file;
+      }
+
+      private MemoryFile newEntryOnAccess(FileAttribute<?>[] newAttributes, MemoryDirectory directory,
+              ElementPath elementPath, EntryCreationContext creationContext) throws IOException {
+        String name = MemoryFileSystem.this.storeTransformer.transform(elementPath.getLastNameElement());
         MemoryFile file = new MemoryFile(name, creationContext);
         checkSupportedInitialAttributes(newAttributes);
         AttributeAccessors.setAttributes(file, newAttributes);
         directory.checkAccess(WRITE);
-        // will throw an exception if already present
-        directory.addEntry(key, file, path);
         return file;
       }
     });
@@ -475,12 +541,35 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
   }
 
   DirectoryStream<Path> newDirectoryStream(AbstractPath abstractPath, Filter<? super Path> filter) throws IOException {
+    return this.newDirectoryStream(abstractPath, MemoryDirectoryStream.ALL_NAMES, filter);
+  }
+
+  /**
+   * Like {@link java.nio.file.Files#newDirectoryStream(Path, String)} but
+   * matches the glob against the stored names before any path is created.
+   */
+  DirectoryStream<Path> newDirectoryStream(AbstractPath abstractPath, String glob) throws IOException {
+    PathMatcher matcher = this.getPathMatcher("glob:" + glob);
+    if (matcher instanceof GlobPathMatcher && !((GlobPathMatcher) matcher).isAbsolute()) {
+      GlobPathMatcher globMatcher = (GlobPathMatcher) matcher;
+      return this.newDirectoryStream(abstractPath, globMatcher::matchesFileName, MemoryDirectoryStream.ACCEPT_ALL);
+    } else if (matcher instanceof RegexRelativePathMatcher) {
+      // a file name is a relative path of a single element, its string is the name
+      RegexPathMatcher regexMatcher = (RegexPathMatcher) matcher;
+      return this.newDirectoryStream(abstractPath, regexMatcher.newNameFilter(), MemoryDirectoryStream.ACCEPT_ALL);
+    } else {
+      // same as Files#newDirectoryStream(Path, String)
+      return this.newDirectoryStream(abstractPath, MemoryDirectoryStream.ALL_NAMES, entry -> matcher.matches(entry.getFileName()));
+    }
+  }
+
+  private DirectoryStream<Path> newDirectoryStream(AbstractPath abstractPath, Predicate<String> nameFilter, Filter<? super Path> filter) throws IOException {
     return this.accessFileReading(abstractPath, true,  entry -> {
       if (!(entry instanceof MemoryDirectory)) {
         throw new NotDirectoryException(abstractPath.toString());
       }
       MemoryDirectory directory = (MemoryDirectory) entry;
-      return directory.newDirectoryStream(abstractPath, filter);
+      return directory.newDirectoryStream(abstractPath, nameFilter, filter);
     });
   }
 
@@ -548,7 +637,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     }
     ElementPath elementPath = (ElementPath) absolutePath;
 
-    this.accessDirectoryWriting((AbstractPath) elementPath.getParent(), true, directory -> {
+    this.accessDirectoryChangingEntries((AbstractPath) elementPath.getParent(), true, directory -> {
       String name = MemoryFileSystem.this.storeTransformer.transform(elementPath.getLastNameElement());
       MemoryEntry newEntry = creator.create(name);
       String key = MemoryFileSystem.this.lookUpTransformer.transform(newEntry.getOriginalName());
@@ -590,8 +679,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
         locks.add(root.readLock());
         MemoryDirectory parent = root;
         for (int i = 0; i < pathElementCount; ++i) {
-          String fileName = nameElements.get(i);
-          String key = this.lookUpTransformer.transform(fileName);
+          String key = elementPath.getLookUpKey(i);
           MemoryEntry current = parent.getEntryOrException(key, path);
           locks.add(current.readLock());
           realPath.add(current.getOriginalName());
@@ -708,45 +796,23 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     return this.accessFileIfExists(path, followSymLinks, LockType.READ, callback);
   }
 
-  private <R> Optional<R> accessFileWritingIfExists(AbstractPath path, boolean followSymLinks, MemoryEntryBlock<? extends R> callback) throws IOException {
-    return this.accessFileIfExists(path, followSymLinks, LockType.WRITE, callback);
-  }
-
   private <R> R accessFile(AbstractPath path, boolean followSymLinks, LockType lockType, MemoryEntryBlock<? extends R> callback) throws IOException {
     this.checker.check();
     AbstractPath absolutePath = (AbstractPath) path.toAbsolutePath().normalize();
     MemoryDirectory root = this.getRootDirectory(absolutePath);
-    Set<MemorySymbolicLink> encounteredSymlinks;
-    if (followSymLinks) {
-      encounteredSymlinks = new HashSet<>(4);
-    } else {
-      encounteredSymlinks = Collections.emptySet();
-    }
-    return this.withLockDo(root, absolutePath, encounteredSymlinks, followSymLinks, lockType, callback);
+    return this.withLockDo(root, absolutePath, null, followSymLinks, lockType, callback);
   }
 
   private <R> Optional<R> accessFileIfExists(AbstractPath path, boolean followSymLinks, LockType lockType, MemoryEntryBlock<? extends R> callback) throws IOException {
     this.checker.check();
     AbstractPath absolutePath = (AbstractPath) path.toAbsolutePath().normalize();
     MemoryDirectory root = this.getRootDirectory(absolutePath);
-    Set<MemorySymbolicLink> encounteredSymlinks;
-    if (followSymLinks) {
-      encounteredSymlinks = new HashSet<>(4);
-    } else {
-      encounteredSymlinks = Collections.emptySet();
-    }
-    return this.withLockDoIfExists(root, absolutePath, encounteredSymlinks, followSymLinks, lockType, callback);
+    return this.withLockDoIfExists(root, absolutePath, null, followSymLinks, lockType, callback);
   }
 
 
   private <R> R withWriteLockOnLastDo(MemoryDirectory root, AbstractPath path, boolean followSymLinks, MemoryDirectoryBlock<R> callback) throws IOException {
-    Set<MemorySymbolicLink> encounteredSymlinks;
-    if (followSymLinks) {
-      encounteredSymlinks = new HashSet<>(4);
-    } else {
-      encounteredSymlinks = Collections.emptySet();
-    }
-    return this.withWriteLockOnLastDo(root, path, followSymLinks, encounteredSymlinks, callback);
+    return this.withWriteLockOnLastDo(root, path, followSymLinks, null, callback);
   }
 
   private <R> R withWriteLockOnLastDo(MemoryDirectory root, AbstractPath path, boolean followSymLinks, Set<MemorySymbolicLink> encounteredSymlinks, final MemoryDirectoryBlock<R> callback) throws IOException {
@@ -758,8 +824,12 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     });
   }
 
-  private <R> R accessDirectoryWriting(AbstractPath path, boolean followSymLinks, MemoryDirectoryBlock<R> callback) throws IOException {
-    return this.accessFileWriting(path, followSymLinks, entry -> {
+  /**
+   * Like {@link #withWriteLockOnLastDo(MemoryDirectory, AbstractPath, boolean, Set, MemoryDirectoryBlock)}
+   * but only takes the read lock, enough to add or remove entries.
+   */
+  private <R> R withEntriesLockOnLastDo(MemoryDirectory root, AbstractPath path, boolean followSymLinks, Set<MemorySymbolicLink> encounteredSymlinks, final MemoryDirectoryBlock<R> callback) throws IOException {
+    return this.withLockDo(root, path, encounteredSymlinks, followSymLinks, LockType.READ, entry -> {
       if (!(entry instanceof MemoryDirectory)) {
         throw new NotDirectoryException(path.toString());
       }
@@ -767,8 +837,21 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     });
   }
 
-  private <R> Optional<R> accessDirectoryWritingIfExists(AbstractPath path, boolean followSymLinks, MemoryDirectoryBlock<R> callback) throws IOException {
-    return this.accessFileWritingIfExists(path, followSymLinks, entry -> {
+  /**
+   * Gives access to a directory to add or remove entries, see
+   * {@link MemoryDirectory} for why the read lock is enough.
+   */
+  private <R> R accessDirectoryChangingEntries(AbstractPath path, boolean followSymLinks, MemoryDirectoryBlock<R> callback) throws IOException {
+    return this.accessFileReading(path, followSymLinks, entry -> {
+      if (!(entry instanceof MemoryDirectory)) {
+        throw new NotDirectoryException(path.toString());
+      }
+      return callback.value((MemoryDirectory) entry);
+    });
+  }
+
+  private <R> Optional<R> accessDirectoryChangingEntriesIfExists(AbstractPath path, boolean followSymLinks, MemoryDirectoryBlock<R> callback) throws IOException {
+    return this.accessFileReadingIfExists(path, followSymLinks, entry -> {
       if (!(entry instanceof MemoryDirectory)) {
         throw new NotDirectoryException(path.toString());
       }
@@ -777,13 +860,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
   }
 
   private <R> R withReadLockDo(MemoryDirectory root, AbstractPath path, boolean followSymLinks, MemoryEntryBlock<? extends R> callback) throws IOException {
-    Set<MemorySymbolicLink> encounteredSymlinks;
-    if (followSymLinks) {
-      encounteredSymlinks = new HashSet<>(4);
-    } else {
-      encounteredSymlinks = Collections.emptySet();
-    }
-    return this.withLockDo(root, path, encounteredSymlinks, followSymLinks, LockType.READ, callback);
+    return this.withLockDo(root, path, null, followSymLinks, LockType.READ, callback);
   }
 
 
@@ -799,23 +876,70 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
       ElementPath elementPath = (ElementPath) path;
       List<String> nameElements = elementPath.getNameElements();
       int pathElementCount = nameElements.size();
-      List<AutoRelease> locks = new ArrayList<>(pathElementCount + 1);
+      LockStack locks = LockStack.current();
+      int mark = locks.mark();
+
+      LookUpCache.CachedEntry cached = this.getCachedEntry(path);
+      if (cached != null && canTraverse(cached.directories)) {
+        locks.push(cached.entry.getLock(lockType));
+        if (cached.isValid()) {
+          try {
+            return callback.value(cached.entry);
+          } finally {
+            locks.releaseTo(mark);
+          }
+        }
+        locks.releaseTo(mark);
+      }
+
+      int traversedMark = locks.traversedMark();
+      MemoryDirectory optimisticParent = this.lookUpParentOptimistic(root, elementPath, locks);
+      if (optimisticParent != null) {
+        String key = elementPath.getLastLookUpKey();
+        MemoryEntry current = optimisticParent.getEntry(key);
+        if (current == null) {
+          if (locks.validateTraversed(traversedMark)) {
+            throw new NoSuchFileException(path.toString());
+          }
+        } else if (followSymLinks && current instanceof MemorySymbolicLink) {
+          locks.validateTraversed(traversedMark);
+        } else {
+          locks.push(current.getLock(lockType));
+          LookUpCache.CachedEntry toCache = this.newCachedEntry(locks, traversedMark, current);
+          if (locks.validateTraversed(traversedMark)) {
+            if (toCache != null) {
+              this.lookUpCache.put(path, toCache);
+            }
+            try {
+              return callback.value(current);
+            } finally {
+              locks.releaseTo(mark);
+            }
+          }
+          locks.releaseTo(mark);
+        }
+      }
+
+      // a directory changed during the look up, look up again with locks
       try {
-        locks.add(root.readLock());
+        locks.push(root.getReadLock());
         MemoryDirectory parent = root;
         for (int i = 0; i < pathElementCount; ++i) {
-          String fileName = nameElements.get(i);
-          String key = this.lookUpTransformer.transform(fileName);
+          String key = elementPath.getLookUpKey(i);
           MemoryEntry current = parent.getEntryOrException(key, path);
           boolean isLast = i == pathElementCount - 1;
           if (isLast) {
-            locks.add(current.lock(lockType));
+            locks.push(current.getLock(lockType));
           } else {
-            locks.add(current.readLock());
+            locks.push(current.getReadLock());
           }
 
           if (followSymLinks && current instanceof MemorySymbolicLink) {
             MemorySymbolicLink link = (MemorySymbolicLink) current;
+            if (encounteredLinks == null) {
+              // only track links once the first one is seen
+              encounteredLinks = new HashSet<>(4);
+            }
             if (!encounteredLinks.add(link)) {
               throw new FileSystemLoopException(path.toString());
             }
@@ -833,10 +957,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
         }
       } finally {
-        for (int i = locks.size() - 1; i >= 0; --i) {
-          AutoRelease lock = locks.get(i);
-          lock.close();
-        }
+        locks.releaseTo(mark);
       }
       if (newLookUpPath == null) {
         return result;
@@ -861,13 +982,56 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
       ElementPath elementPath = (ElementPath) path;
       List<String> nameElements = elementPath.getNameElements();
       int pathElementCount = nameElements.size();
-      List<AutoRelease> locks = new ArrayList<>(pathElementCount + 1);
+      LockStack locks = LockStack.current();
+      int mark = locks.mark();
+
+      LookUpCache.CachedEntry cached = this.getCachedEntry(path);
+      if (cached != null && canTraverse(cached.directories)) {
+        locks.push(cached.entry.getLock(lockType));
+        if (cached.isValid()) {
+          try {
+            return Optional.of(callback.value(cached.entry));
+          } finally {
+            locks.releaseTo(mark);
+          }
+        }
+        locks.releaseTo(mark);
+      }
+
+      int traversedMark = locks.traversedMark();
+      MemoryDirectory optimisticParent = this.lookUpParentOptimistic(root, elementPath, locks);
+      if (optimisticParent != null) {
+        String key = elementPath.getLastLookUpKey();
+        MemoryEntry current = optimisticParent.getEntry(key);
+        if (current == null) {
+          if (locks.validateTraversed(traversedMark)) {
+            return Optional.empty();
+          }
+        } else if (followSymLinks && current instanceof MemorySymbolicLink) {
+          locks.validateTraversed(traversedMark);
+        } else {
+          locks.push(current.getLock(lockType));
+          LookUpCache.CachedEntry toCache = this.newCachedEntry(locks, traversedMark, current);
+          if (locks.validateTraversed(traversedMark)) {
+            if (toCache != null) {
+              this.lookUpCache.put(path, toCache);
+            }
+            try {
+              return Optional.of(callback.value(current));
+            } finally {
+              locks.releaseTo(mark);
+            }
+          }
+          locks.releaseTo(mark);
+        }
+      }
+
+      // a directory changed during the look up, look up again with locks
       try {
-        locks.add(root.readLock());
+        locks.push(root.getReadLock());
         MemoryDirectory parent = root;
         for (int i = 0; i < pathElementCount; ++i) {
-          String fileName = nameElements.get(i);
-          String key = this.lookUpTransformer.transform(fileName);
+          String key = elementPath.getLookUpKey(i);
           MemoryEntry current = parent.getEntry(key);
           if (current == null) {
             result = Optional.empty();
@@ -875,13 +1039,17 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
           }
           boolean isLast = i == pathElementCount - 1;
           if (isLast) {
-            locks.add(current.lock(lockType));
+            locks.push(current.getLock(lockType));
           } else {
-            locks.add(current.readLock());
+            locks.push(current.getReadLock());
           }
 
           if (followSymLinks && current instanceof MemorySymbolicLink) {
             MemorySymbolicLink link = (MemorySymbolicLink) current;
+            if (encounteredLinks == null) {
+              // only track links once the first one is seen
+              encounteredLinks = new HashSet<>(4);
+            }
             if (!encounteredLinks.add(link)) {
               throw new FileSystemLoopException(path.toString());
             }
@@ -899,10 +1067,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
 
         }
       } finally {
-        for (int i = locks.size() - 1; i >= 0; --i) {
-          AutoRelease lock = locks.get(i);
-          lock.close();
-        }
+        locks.releaseTo(mark);
       }
       if (newLookUpPath == null) {
         return result;
@@ -915,6 +1080,74 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     }
   }
 
+  private LookUpCache.CachedEntry getCachedEntry(AbstractPath path) {
+    if (this.lookUpCache.isEnabled()) {
+      return this.lookUpCache.get(path);
+    }
+    return null;
+  }
+
+  /**
+   * Creates the cache entry for an entry that should be added to the look
+   * up cache, has to be called before the traversed directories are
+   * validated.
+   */
+  private LookUpCache.CachedEntry newCachedEntry(LockStack locks, int traversedMark, MemoryEntry entry) {
+    if (this.lookUpCache.isEnabled() && !(entry instanceof MemorySymbolicLink)) {
+      return new LookUpCache.CachedEntry(entry, locks.getTraversed(traversedMark));
+    }
+    return null;
+  }
+
+  private static boolean canTraverse(MemoryDirectory[] directories) {
+    for (MemoryDirectory directory : directories) {
+      try {
+        directory.checkAccess(AccessMode.EXECUTE);
+      } catch (AccessDeniedException e) {
+        // look up again to report the error
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Looks up the directory containing the last element of a path without
+   * locking the directories on the way so that concurrent look ups don't
+   * write to the lock state of shared directories like the root. The
+   * directories are recorded on the lock stack instead and have to be
+   * validated with {@link LockStack#validateTraversed(int)} once the last
+   * entry is locked.
+   *
+   * @return the directory containing the last element, {@code null} if the
+   *         path has to be looked up with locks because a directory on the
+   *         way is missing, not accessible or a symbolic link
+   */
+  private MemoryDirectory lookUpParentOptimistic(MemoryDirectory root, ElementPath path, LockStack locks) {
+    int traversedMark = locks.traversedMark();
+    MemoryDirectory parent = root;
+    int last = path.getNameCount() - 1;
+    for (int i = 0; ; ++i) {
+      locks.traversed(parent, parent.version());
+      try {
+        parent.checkAccess(AccessMode.EXECUTE);
+      } catch (AccessDeniedException e) {
+        locks.validateTraversed(traversedMark);
+        return null;
+      }
+      if (i == last) {
+        return parent;
+      }
+      String key = path.getLookUpKey(i);
+      MemoryEntry current = parent.getEntry(key);
+      if (!(current instanceof MemoryDirectory)) {
+        locks.validateTraversed(traversedMark);
+        return null;
+      }
+      parent = (MemoryDirectory) current;
+    }
+  }
+
   private Path resolveSymlink(AbstractPath path, MemorySymbolicLink link, List<String> nameElements, int pathElementCount, int currentNameElementIndex) {
     Path newLookUpPath;
     Path symLinkTarget = link.getTarget();
@@ -996,8 +1229,9 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
       throw new FileSystemException(toStringOrNull(firstParent), toStringOrNull(secondParent), "can't move ore copy the file system root");
     }
 
-    MemoryDirectory firstRoot = sourceFileSystem.getRootDirectory(copyContext.first.path);
-    MemoryDirectory secondRoot = targetFileSystem.getRootDirectory(copyContext.second.path);
+    // first and second may be swapped
+    MemoryDirectory firstRoot = copyContext.first.path.getMemoryFileSystem().getRootDirectory(copyContext.first.path);
+    MemoryDirectory secondRoot = copyContext.second.path.getMemoryFileSystem().getRootDirectory(copyContext.second.path);
     copyContext.first.path.getMemoryFileSystem().withWriteLockOnLastDo(firstRoot, firstParent, copyContext.firstFollowSymLinks, firstDirectory -> {
       copyContext.second.path.getMemoryFileSystem().withWriteLockOnLastDo(secondRoot, secondParent, copyContext.secondFollowSymLinks, secondDirectory -> {
         handleTwoPathOperation(copyContext, firstDirectory, secondDirectory);
@@ -1162,11 +1396,14 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
       ElementPath elementPath = (ElementPath) absolutePath;
 
       AbstractPath parent = (AbstractPath) elementPath.getParent();
-      this.accessDirectoryWriting(parent, true, directory -> {
-        String fileName = elementPath.getLastNameElement();
-        String key = MemoryFileSystem.this.lookUpTransformer.transform(fileName);
+      this.accessDirectoryChangingEntries(parent, true, directory -> {
+        String key = elementPath.getLastLookUpKey();
         MemoryEntry child = directory.getEntryOrException(key, abstractPath);
         try (AutoRelease lock = child.writeLock()) {
+          if (directory.getEntry(key) != child) {
+            // deleted concurrently
+            throw new NoSuchFileException(abstractPath.toString());
+          }
           if (child instanceof MemoryDirectory) {
             MemoryDirectory childDirectory = (MemoryDirectory) child;
             childDirectory.checkEmpty(abstractPath);
@@ -1180,6 +1417,11 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
           }
           directory.checkAccess(WRITE);
           directory.removeEntry(key);
+          if (child instanceof MemoryFile) {
+            ((MemoryFile) child).unlinked();
+          } else if (child instanceof MemoryDirectory) {
+            ((MemoryDirectory) child).invalidateWatchKeys();
+          }
         }
         return null;
       });
@@ -1195,12 +1437,15 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
       ElementPath elementPath = (ElementPath) absolutePath;
 
       AbstractPath parent = (AbstractPath) elementPath.getParent();
-      return this.accessDirectoryWritingIfExists(parent, true, directory -> {
-        String fileName = elementPath.getLastNameElement();
-        String key = MemoryFileSystem.this.lookUpTransformer.transform(fileName);
+      return this.accessDirectoryChangingEntriesIfExists(parent, true, directory -> {
+        String key = elementPath.getLastLookUpKey();
         MemoryEntry child = directory.getEntry(key);
         if (child != null) {
           try (AutoRelease lock = child.writeLock()) {
+            if (directory.getEntry(key) != child) {
+              // deleted concurrently
+              return false;
+            }
             if (child instanceof MemoryDirectory) {
               MemoryDirectory childDirectory = (MemoryDirectory) child;
               childDirectory.checkEmpty(abstractPath);
@@ -1214,6 +1459,11 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
             }
             directory.checkAccess(WRITE);
             directory.removeEntry(key);
+            if (child instanceof MemoryFile) {
+              ((MemoryFile) child).unlinked();
+            } else if (child instanceof MemoryDirectory) {
+              ((MemoryDirectory) child).invalidateWatchKeys();
+            }
           }
           return true;
         } else {
@@ -1238,6 +1488,9 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     if (this.checker.close()) {
       // closing twice is explicitly allowed by the contract
       this.checker.close();
+      for (MemoryFileSystemWatchService watchService : this.watchServices) {
+        watchService.close();
+      }
       this.provider.close(this);
     }
   }
@@ -1303,7 +1556,7 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     String syntax = syntaxAndPattern.substring(0, colonIndex);
     String pattern = syntaxAndPattern.substring(colonIndex + 1);
     if (syntax.equalsIgnoreCase(GlobPathMatcher.name())) {
-      return this.pathParser.transpileGlob(pattern, this.lookUpTransformer.getRegexFlags());
+      return this.pathParser.compileGlob(pattern, this.lookUpTransformer.getRegexFlags());
     }
     if (syntax.equalsIgnoreCase(RegexPathMatcher.name())) {
       return this.pathParser.compileRegex(pattern, this.lookUpTransformer.getRegexFlags());
@@ -1321,25 +1574,34 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
   @Override
   public WatchService newWatchService() {
     this.checker.check();
-    // TODO make configurable
-    if (true) {
-      throw new UnsupportedOperationException();
-    }
-    return new MemoryFileSystemWatchService(this);
+    MemoryFileSystemWatchService watchService = new MemoryFileSystemWatchService(this);
+    this.watchServices.add(watchService);
+    return watchService;
+  }
+
+  void watchServiceClosed(MemoryFileSystemWatchService watchService) {
+    this.watchServices.remove(watchService);
   }
 
-  void register(MemoryWatchKey watchKey) {
+  MemoryWatchKey register(AbstractPath path, MemoryFileSystemWatchService watcher, Set<Kind<?>> events, boolean fileTree) throws IOException {
     this.checker.check();
-    AbsolutePath absolutePath = (AbsolutePath) watchKey.watchable().toAbsolutePath();
-    List<MemoryWatchKey> keys = this.watchKeys.get(absolutePath);
-    if (keys == null) {
-      keys = new CopyOnWriteArrayList<>();
-      List<MemoryWatchKey> previous = this.watchKeys.putIfAbsent(absolutePath, keys);
-      if (previous != null) {
-        keys = previous;
+    watcher.checkOpen();
+    return this.accessFileReading(path, true, entry -> {
+      if (!(entry instanceof MemoryDirectory)) {
+        throw new NotDirectoryException(path.toString());
       }
-    }
-    keys.add(watchKey);
+      entry.checkAccess(READ);
+      MemoryDirectory directory = (MemoryDirectory) entry;
+      MemoryWatchKey watchKey = new MemoryWatchKey(path, directory, watcher, events, fileTree, this.watchEventCapacity);
+      MemoryWatchKey existing = directory.addWatchKeyIfAbsent(watchKey);
+      if (existing != null) {
+        // registering again replaces the events and modifiers
+        existing.update(events, fileTree);
+        return existing;
+      }
+      watcher.register(watchKey);
+      return watchKey;
+    });
   }
 
   FileStore getFileStore() {
@@ -1350,6 +1612,37 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     return this.collator;
   }
 
+  boolean isIdentityCollator() {
+    return this.identityCollator;
+  }
+
+  boolean isIdentityLookUp() {
+    return this.identityLookUp;
+  }
+
+  /**
+   * Returns the key a name element is looked up with in a directory.
+   */
+  String lookUpKey(String element) {
+    return this.lookUpTransformer.transform(element);
+  }
+
+  /**
+   * Computes a hash code of a name element that is consistent with
+   * {@link Collator#equals(String, String)} of the collator of this
+   * file system.
+   *
+   * @param element the name element
+   * @return the hash code of the element
+   */
+  int hashNameElement(String element) {
+    if (this.identityCollator) {
+      return element.hashCode();
+    }
+    CollationKey collationKey = this.collator.getCollationKey(element);
+    return Arrays.hashCode(collationKey.toByteArray());
+  }
+
   @Override
   public Instant truncate(Instant instant) {
     if (instant == null || this.resolution == null) {
@@ -1358,6 +1651,26 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
     return instant.truncatedTo(this.resolution);
   }
 
+  @Override
+  public BlockAllocator getBlockAllocator() {
+    return this.blockAllocator;
+  }
+
+  @Override
+  public void watchKeyAdded() {
+    this.watchKeyCount.incrementAndGet();
+  }
+
+  @Override
+  public void watchKeysRemoved(int count) {
+    this.watchKeyCount.addAndGet(-count);
+  }
+
+  @Override
+  public boolean isWatched() {
+    return this.watchKeyCount.get() > 0;
+  }
+
   @Override
   public UserPrincipal getDefaultUser() {
     return this.getUserPrincipalLookupService().getDefaultUser();
@@ -1465,17 +1778,30 @@ class MemoryFileSystem extends FileSystem implements FileSystemContext {
         try (AutoRelease lock = targetDirectory.readLock()) {
           targetDirectory.checkEmpty(targetContext.path);
         }
+      } else if (targetEntry instanceof MemoryFile) {
+        // the replaced file is deleted, streams and channels still open on
+        // it keep its blocks until they are closed
+        MemoryFile targetFile = (MemoryFile) targetEntry;
+        try (AutoRelease lock = targetFile.writeLock()) {
+          targetFile.markForDeletion();
+        }
       }
 
       // TODO target should become symlink
       targetParent.removeEntry(targetElementName);
+      if (targetEntry instanceof MemoryFile) {
+        ((MemoryFile) targetEntry).unlinked();
+      } else if (targetEntry instanceof MemoryDirectory) {
+        ((MemoryDirectory) targetEntry).invalidateWatchKeys();
+      }
     }
 
     String newOriginalName = targetContext.path.getMemoryFileSystem().storeTransformer.transform(targetContext.elementName);
     if (copyContext.operation.isMove()) {
       sourceParent.removeEntry(sourceElementName);
-      targetParent.addEntry(targetElementName, sourceEntry, copyContext.target.path);
+      // rename before adding so that the creation event has the new name
       sourceEntry.setOriginalName(newOriginalName);
+      targetParent.addEntry(targetElementName, sourceEntry, copyContext.target.path);
     } else {
       MemoryEntry toCopy = getCopySource(copyContext, sourceEntry);
       MemoryEntry copy = targetContext.path.getMemoryFileSystem().copyEntry(targetContext.path, toCopy, newOriginalName);
@@ -23,6 +23,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -74,6 +75,18 @@ public final class MemoryFileSystemBuilder {
 
   private boolean supportFileChannelOnDirectory;
 
+  private boolean offHeap;
+
+  private int blockSize;
+
+  private int lookUpCacheSize;
+
+  private int watchEventCapacity;
+
+  private ExecutorService asynchronousExecutor;
+
+  private boolean synchronousCompletion;
+
   private MemoryFileSystemBuilder() {
     this.roots = new ArrayList<>();
     this.users = new LinkedHashSet<>();
@@ -81,6 +94,7 @@ public final class MemoryFileSystemBuilder {
     this.additionalFileAttributeViews = new HashSet<>();
     this.forbiddenCharacters = new HashSet<>();
     this.supportFileChannelOnDirectory = false;
+    this.offHeap = false;
   }
 
   /**
@@ -309,6 +323,129 @@ public final class MemoryFileSystemBuilder {
     return this;
   }
 
+  /**
+   * Sets whether the contents of files are stored outside of the Java heap.
+   *
+   * <p>Storing large amounts of data off heap reduces the pressure on the
+   * garbage collector. The amount of data that can be stored is then
+   * limited by {@code -XX:MaxDirectMemorySize} instead of {@code -Xmx}.</p>
+   *
+   * @param offHeap whether the contents of files should be stored off heap
+   * @return the current builder object
+   * @see java.nio.ByteBuffer#allocateDirect(int)
+   */
+  public MemoryFileSystemBuilder setStoreFileContentsOffHeap(boolean offHeap) {
+    this.offHeap = offHeap;
+    return this;
+  }
+
+  /**
+   * Sets the size of the blocks in which the contents of files are stored.
+   *
+   * <p>Larger blocks make reading and writing large files faster, smaller
+   * blocks waste less memory for small files.</p>
+   *
+   * @param blockSize the block size in bytes, positive and not larger than 16 MB
+   * @return the current builder object
+   * @throws IllegalArgumentException if {@code blockSize} is not positive or
+   *         larger than 16 MB
+   * @see java.nio.file.FileStore#getBlockSize()
+   */
+  public MemoryFileSystemBuilder setBlockSize(int blockSize) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("block size must be positive but was " + blockSize);
+    }
+    if (blockSize > BlockAllocator.MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("block size must not be larger than " + BlockAllocator.MAX_BLOCK_SIZE + " but was " + blockSize);
+    }
+    this.blockSize = blockSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of paths whose look up results are cached.
+   *
+   * <p>Looking up a cached path does not traverse its directories, this
+   * helps when the same deep paths are accessed repeatedly. Deleting or
+   * moving an entry only invalidates the cached paths to the entry and
+   * below it. Paths containing symbolic links are not cached. The default
+   * is {@code 0} which disables the cache.</p>
+   *
+   * @param lookUpCacheSize the maximum number of cached paths, {@code 0}
+   *        to disable the cache
+   * @return the current builder object
+   * @throws IllegalArgumentException if {@code lookUpCacheSize} is negative
+   * @see MemoryFileSystemProperties#LOOK_UP_CACHE_SIZE_PROPERTY
+   */
+  public MemoryFileSystemBuilder setLookUpCacheSize(int lookUpCacheSize) {
+    if (lookUpCacheSize < 0) {
+      throw new IllegalArgumentException("look up cache size must not be negative but was " + lookUpCacheSize);
+    }
+    this.lookUpCacheSize = lookUpCacheSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of events a watch key accumulates until they
+   * are polled.
+   *
+   * <p>Further events are dropped and counted by a single overflow event,
+   * repeated modifications of the same entry only increment the count of
+   * one event. The default is {@code 512}.</p>
+   *
+   * @param watchEventCapacity the maximum number of events per watch key
+   * @return the current builder object
+   * @throws IllegalArgumentException if {@code watchEventCapacity} is not positive
+   * @see MemoryFileSystemProperties#WATCH_EVENT_CAPACITY_PROPERTY
+   */
+  public MemoryFileSystemBuilder setWatchEventCapacity(int watchEventCapacity) {
+    if (watchEventCapacity <= 0) {
+      throw new IllegalArgumentException("watch event capacity must be positive but was " + watchEventCapacity);
+    }
+    this.watchEventCapacity = watchEventCapacity;
+    return this;
+  }
+
+  /**
+   * Sets the executor of asynchronous file channels opened without an
+   * executor.
+   *
+   * <p>The executor performs the reads, writes and locks and invokes the
+   * completion handlers. It can be a fixed pool, a
+   * {@link java.util.concurrent.ForkJoinPool} or, on Java 21 and later,
+   * {@code Executors.newVirtualThreadPerTaskExecutor()}. It is not shut down
+   * when the file system is closed. By default all file systems share a
+   * pool with one thread per processor.</p>
+   *
+   * @param asynchronousExecutor the executor of asynchronous file channels,
+   *                             not {@code null}
+   * @return the current builder object
+   * @see MemoryFileSystemProperties#ASYNCHRONOUS_EXECUTOR_PROPERTY
+   */
+  public MemoryFileSystemBuilder setAsynchronousExecutor(ExecutorService asynchronousExecutor) {
+    this.asynchronousExecutor = Objects.requireNonNull(asynchronousExecutor, "asynchronousExecutor");
+    return this;
+  }
+
+  /**
+   * Sets whether reads and writes of asynchronous file channels are
+   * completed synchronously by the calling thread.
+   *
+   * <p>Avoids handing every operation and completion to another thread.
+   * Futures are returned completed and completion handlers are invoked
+   * before the read or write method returns. The default is
+   * {@code false}.</p>
+   *
+   * @param synchronousCompletion whether reads and writes should be
+   *                              completed by the calling thread
+   * @return the current builder object
+   * @see MemoryFileSystemProperties#SYNCHRONOUS_COMPLETION_PROPERTY
+   */
+  public MemoryFileSystemBuilder setSynchronousCompletion(boolean synchronousCompletion) {
+    this.synchronousCompletion = synchronousCompletion;
+    return this;
+  }
+
   /**
    * Creates a builder for a very basic file system.
    *
@@ -562,6 +699,24 @@ public final class MemoryFileSystemBuilder {
     env.put(MemoryFileSystemProperties.FILE_ATTRIBUTE_VIEWS_PROPERTY, this.additionalFileAttributeViews);
     env.put(MemoryFileSystemProperties.FORBIDDEN_CHARACTERS_PROPERTY, this.forbiddenCharacters);
     env.put(MemoryFileSystemProperties.FILE_CHANNEL_DIRECTORY_PROPERTY, this.supportFileChannelOnDirectory);
+    if (this.offHeap) {
+      env.put(MemoryFileSystemProperties.OFF_HEAP_PROPERTY, Boolean.TRUE);
+    }
+    if (this.blockSize != 0) {
+      env.put(MemoryFileSystemProperties.BLOCK_SIZE_PROPERTY, this.blockSize);
+    }
+    if (this.lookUpCacheSize != 0) {
+      env.put(MemoryFileSystemProperties.LOOK_UP_CACHE_SIZE_PROPERTY, this.lookUpCacheSize);
+    }
+    if (this.watchEventCapacity != 0) {
+      env.put(MemoryFileSystemProperties.WATCH_EVENT_CAPACITY_PROPERTY, this.watchEventCapacity);
+    }
+    if (this.asynchronousExecutor != null) {
+      env.put(MemoryFileSystemProperties.ASYNCHRONOUS_EXECUTOR_PROPERTY, this.asynchronousExecutor);
+    }
+    if (this.synchronousCompletion) {
+      env.put(MemoryFileSystemProperties.SYNCHRONOUS_COMPLETION_PROPERTY, Boolean.TRUE);
+    }
 
     return env;
   }
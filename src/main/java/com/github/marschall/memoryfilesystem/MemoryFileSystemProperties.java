@@ -115,6 +115,101 @@ public class MemoryFileSystemProperties {
    */
   public static final String FILE_CHANNEL_DIRECTORY_PROPERTY = "filechannel.on.directory";
 
+  /**
+   * Name of property for storing the contents of files outside of the Java heap
+   * in direct buffers.
+   *
+   * Must be a {@link java.lang.Boolean}.
+   *
+   * @see java.nio.ByteBuffer#allocateDirect(int)
+   */
+  public static final String OFF_HEAP_PROPERTY = "file.contents.offheap";
+
+  /**
+   * Name of property for the size in bytes of the blocks in which the contents
+   * of files are stored.
+   *
+   * <p>Larger blocks make reading and writing large files faster, smaller
+   * blocks waste less memory for small files. The default is slightly less
+   * than 4 KB. Files of file systems with the same block size can share
+   * blocks when they are copied.</p>
+   *
+   * Must be a positive {@link java.lang.Integer} not larger than 16 MB.
+   *
+   * @see java.nio.file.FileStore#getBlockSize()
+   */
+  public static final String BLOCK_SIZE_PROPERTY = "file.contents.blocksize";
+
+  /**
+   * Name of property for the maximum number of paths whose look up results
+   * are cached.
+   *
+   * <p>Looking up a cached path does not traverse its directories. Deleting
+   * or moving an entry only invalidates the cached paths to the entry and
+   * below it. Paths containing symbolic links are not cached. Once the
+   * cache is full paths that were not hit recently are evicted first. The
+   * number of hits and misses can be read from the file store attributes
+   * {@code "lookUpCache:hits"} and {@code "lookUpCache:misses"}. The
+   * default is {@code 0} which disables the cache.</p>
+   *
+   * Must be a non-negative {@link java.lang.Integer}.
+   *
+   * @see java.nio.file.FileStore#getAttribute(String)
+   */
+  public static final String LOOK_UP_CACHE_SIZE_PROPERTY = "lookup.cache.size";
+
+  /**
+   * Name of property for the maximum number of events a watch key
+   * accumulates until they are polled.
+   *
+   * <p>Further events are dropped and counted by a single
+   * {@link java.nio.file.StandardWatchEventKinds#OVERFLOW} event so that a
+   * slow consumer does not cause memory to grow. Repeated modifications of
+   * the same entry only increment the count of one event. The default is
+   * {@code 512}.</p>
+   *
+   * Must be a positive {@link java.lang.Integer}.
+   *
+   * @see java.nio.file.WatchKey#pollEvents()
+   */
+  public static final String WATCH_EVENT_CAPACITY_PROPERTY = "watch.event.capacity";
+
+  /**
+   * Name of the property of the executor that performs the operations and
+   * invokes the completion handlers of asynchronous file channels opened
+   * without an executor.
+   *
+   * <p>This can be a {@link java.util.concurrent.ThreadPoolExecutor}, a
+   * {@link java.util.concurrent.ForkJoinPool} or, on Java 21 and later, an
+   * executor creating a virtual thread per task. The executor is not shut
+   * down when the file system is closed. By default all file systems share
+   * a pool with one thread per processor.</p>
+   *
+   * Must be an instance of {@link java.util.concurrent.ExecutorService}.
+   *
+   * @see java.nio.channels.AsynchronousFileChannel#open(Path, java.nio.file.OpenOption...)
+   */
+  public static final String ASYNCHRONOUS_EXECUTOR_PROPERTY = "asynchronous.executor";
+
+  /**
+   * Name of the property for completing reads and writes of asynchronous
+   * file channels synchronously.
+   *
+   * <p>Reads and writes of a memory file system never block, if enabled
+   * they are performed by the calling thread. A returned
+   * {@link java.util.concurrent.Future} is already completed, a
+   * {@link java.nio.channels.CompletionHandler} is invoked by the calling
+   * thread before the read or write method returns. A handler that issues
+   * further operations is invoked by the executor once a small number of
+   * invocations are nested on the stack. Locks are still acquired
+   * asynchronously. The default is {@code false}.</p>
+   *
+   * Must be a {@link java.lang.Boolean}.
+   *
+   * @see java.nio.channels.AsynchronousFileChannel
+   */
+  public static final String SYNCHRONOUS_COMPLETION_PROPERTY = "asynchronous.synchronous.completion";
+
   /**
    * Name of the property of the {@link Collator} used to compare path elements.
    *
@@ -42,6 +42,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Creates memory file systems instances.
@@ -68,8 +69,9 @@ public final class MemoryFileSystemProvider extends FileSystemProvider {
    */
   public MemoryFileSystemProvider() {
     this.fileSystems = new ConcurrentHashMap<>();
-    this.workExecutor = Executors.newFixedThreadPool(1, new NamedDaemonThreadFactory("memory-file-system-worker"));
-    this.callbackExecutor = Executors.newFixedThreadPool(1, new NamedDaemonThreadFactory("memory-file-system-callback"));
+    int threads = Runtime.getRuntime().availableProcessors();
+    this.workExecutor = Executors.newFixedThreadPool(threads, new NamedDaemonThreadFactory("memory-file-system-worker"));
+    this.callbackExecutor = Executors.newFixedThreadPool(threads, new NamedDaemonThreadFactory("memory-file-system-callback"));
   }
 
   @Override
@@ -133,7 +135,9 @@ public final class MemoryFileSystemProvider extends FileSystemProvider {
     StringTransformer storeTransformer = parser.getStoreTransformer();
     StringTransformer lookUpTransformer = parser.getLookUpTransformer();
     Collator collator = parser.getCollator();
-    MemoryFileStore memoryStore = new MemoryFileStore(key, checker);
+    BlockAllocator blockAllocator = parser.getBlockAllocator();
+    LookUpCache lookUpCache = parser.getLookUpCache();
+    MemoryFileStore memoryStore = new MemoryFileStore(key, checker, blockAllocator.getBlockSize(), lookUpCache);
     Set<Class<? extends FileAttributeView>> additionalViews = parser.getAdditionalViews();
     MemoryUserPrincipalLookupService userPrincipalLookupService = this.createUserPrincipalLookupService(parser, checker);
     PathParser pathParser = this.buildPathParser(parser);
@@ -143,10 +147,14 @@ public final class MemoryFileSystemProvider extends FileSystemProvider {
     }
     TemporalUnit resolution =  parser.getFileTimeResolution();
     boolean supportFileChannelOnDirectory = parser.supportFileChannelOnDirectory();
+    int watchEventCapacity = parser.getWatchEventCapacity();
+    ExecutorService asynchronousExecutor = parser.getAsynchronousExecutor();
+    boolean synchronousCompletion = parser.isSynchronousCompletion();
 
     MemoryFileSystem fileSystem = new MemoryFileSystem(key, separator, pathParser, this, memoryStore,
             userPrincipalLookupService, checker, storeTransformer, lookUpTransformer, collator,
-            additionalViews, umask, resolution, supportFileChannelOnDirectory);
+            additionalViews, umask, resolution, supportFileChannelOnDirectory, blockAllocator, lookUpCache,
+            watchEventCapacity, asynchronousExecutor, synchronousCompletion);
     fileSystem.setRootDirectories(this.buildRootsDirectories(parser,  fileSystem, additionalViews, umask));
     String defaultDirectory = parser.getDefaultDirectory();
     fileSystem.setCurrentWorkingDirectory(defaultDirectory);
@@ -265,12 +273,18 @@ public final class MemoryFileSystemProvider extends FileSystemProvider {
     this.checkSupported(options);
     validateOptions(options);
     FileChannel fileChannel = this.newFileChannel(path, options, attrs);
+    MemoryFileSystem memoryFileSystem = castPath(path).getMemoryFileSystem();
+    ExecutorService channelExecutor = executor;
+    if (channelExecutor == null) {
+      channelExecutor = memoryFileSystem.getAsynchronousExecutor();
+    }
     if (fileChannel instanceof BlockChannel) {
       return new AsynchronousBlockChannel((BlockChannel) fileChannel,
-              executor != null ? executor : this.workExecutor, executor != null ? executor : this.callbackExecutor);
+              channelExecutor != null ? channelExecutor : this.workExecutor, channelExecutor != null ? channelExecutor : this.callbackExecutor,
+              memoryFileSystem.isSynchronousCompletion());
     } else if (fileChannel instanceof DirectoryChannel) {
       return new AsynchronousDirectoryFileChannel((DirectoryChannel) fileChannel,
-              executor != null ? executor : this.callbackExecutor);
+              channelExecutor != null ? channelExecutor : this.callbackExecutor);
     } else {
       throw new IllegalStateException("unknown channel type: " + fileChannel.getClass());
     }
@@ -576,13 +590,16 @@ public final class MemoryFileSystemProvider extends FileSystemProvider {
 
     private final String name;
 
+    private final AtomicInteger threadNumber;
+
     NamedDaemonThreadFactory(String name) {
       this.name = name;
+      this.threadNumber = new AtomicInteger(1);
     }
 
     @Override
     public Thread newThread(Runnable r) {
-      Thread thread = new Thread(r, this.name);
+      Thread thread = new Thread(r, this.name + '-' + this.threadNumber.getAndIncrement());
       thread.setDaemon(true);
       return thread;
     }
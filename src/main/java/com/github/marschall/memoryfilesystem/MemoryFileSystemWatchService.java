@@ -1,50 +1,94 @@
 package com.github.marschall.memoryfilesystem;
 
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 final class MemoryFileSystemWatchService implements WatchService {
 
+  // queued once closed to wake up waiting threads
+  private static final MemoryWatchKey CLOSED = new MemoryWatchKey(null, null, null, Collections.emptySet(), false, 0);
+
   private final ClosedWatchServiceChecker checker;
 
   private final BlockingQueue<MemoryWatchKey> readyKeys;
 
+  private final Set<MemoryWatchKey> keys;
+
   private final MemoryFileSystem memoryFileSystem;
 
   MemoryFileSystemWatchService(MemoryFileSystem memoryFileSystem) {
     this.memoryFileSystem = memoryFileSystem;
     this.checker = new ClosedWatchServiceChecker();
     this.readyKeys = new LinkedBlockingQueue<>();
+    this.keys = ConcurrentHashMap.newKeySet();
   }
 
   @Override
   public void close() {
     if (this.checker.close()) {
-      // TODO invalidate keys
-      // TODO throw new UnsupportedOperationException for all poll/take
-      throw new UnsupportedOperationException();
+      for (MemoryWatchKey key : this.keys) {
+        key.cancel();
+      }
+      this.readyKeys.clear();
+      this.readyKeys.offer(CLOSED);
+      this.memoryFileSystem.watchServiceClosed(this);
+    }
+  }
+
+  void checkOpen() {
+    this.checker.check();
+  }
+
+  void register(MemoryWatchKey key) {
+    this.keys.add(key);
+    if (!this.checker.isOpen()) {
+      // closed concurrently
+      key.cancel();
+    }
+  }
+
+  void cancelled(MemoryWatchKey key) {
+    this.keys.remove(key);
+  }
+
+  void enqueue(MemoryWatchKey key) {
+    if (this.checker.isOpen()) {
+      this.readyKeys.offer(key);
     }
   }
 
   @Override
   public WatchKey poll() {
     this.checker.check();
-    return this.readyKeys.poll();
+    return this.checkClosed(this.readyKeys.poll());
   }
 
   @Override
   public WatchKey poll(long timeout, TimeUnit unit) throws InterruptedException {
     this.checker.check();
-    return this.readyKeys.poll(timeout, unit);
+    return this.checkClosed(this.readyKeys.poll(timeout, unit));
   }
 
   @Override
   public WatchKey take() throws InterruptedException {
     this.checker.check();
-    return this.readyKeys.take();
+    return this.checkClosed(this.readyKeys.take());
+  }
+
+  private WatchKey checkClosed(MemoryWatchKey key) {
+    if (key == CLOSED) {
+      // wake up the next waiting thread as well
+      this.readyKeys.offer(key);
+      throw new ClosedWatchServiceException();
+    }
+    return key;
   }
 
   MemoryFileSystem getMemoryFileSystem() {
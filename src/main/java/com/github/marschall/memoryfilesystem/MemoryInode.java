@@ -9,8 +9,10 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
 
 final class MemoryInode {
 
@@ -20,8 +22,21 @@ final class MemoryInode {
    * and update the open count.
    *
    * #transferTo and #transferFrom are candidates for deadlocks since they
-   * acquire two locks without ordering. However one is a read lock
-   * and the other is a write lock. So I "think" we're fine for now.
+   * call the other channel while holding the lock, so they acquire two
+   * locks without ordering. The lock is not reentrant so a transfer between
+   * channels on the same inode must not call the other channel while
+   * holding it at all, see #transferFromSelf(ReadableByteChannel, long, long).
+   *
+   * Positional reads first try to read without taking the lock and only
+   * take the read lock if a write happened in the meantime, see
+   * #read(ByteBuffer, long, long). This keeps concurrent readers of the
+   * same file from contending on the lock state. The lock is not reentrant.
+   *
+   * Positional writes that span more than the direct block only hold the
+   * read lock and lock the stripes of the blocks they write, so writes to
+   * different blocks proceed in parallel, see #stripedWriteLock(long, long).
+   * Allocating blocks and everything else that changes the tables still
+   * needs the write lock.
    */
 
   /**
@@ -30,149 +45,513 @@ final class MemoryInode {
    */
   private static final int ARRAY_HEADER = 8 + 8 + 4;
 
+  /**
+   * The default block size, can be changed per file system.
+   */
   static final int BLOCK_SIZE = 4096 - ARRAY_HEADER; //make sure it fits into a 4k memory region
+
+  /**
+   * The number of entries in every table, independent of the block size.
+   */
   static final int NUMBER_OF_BLOCKS = BLOCK_SIZE;
 
+  /**
+   * Index of the first block stored in {@link #doubleIndirectBlocks}.
+   */
+  static final long DOUBLE_INDIRECT_OFFSET = 1L + NUMBER_OF_BLOCKS;
+
+  /**
+   * Index of the first block stored in {@link #tripleIndirectBlocks}.
+   */
+  static final long TRIPLE_INDIRECT_OFFSET = DOUBLE_INDIRECT_OFFSET + (long) NUMBER_OF_BLOCKS * NUMBER_OF_BLOCKS;
+
+  /**
+   * The maximum number of blocks a file can have.
+   */
+  static final long MAX_BLOCKS = TRIPLE_INDIRECT_OFFSET + (long) NUMBER_OF_BLOCKS * NUMBER_OF_BLOCKS * NUMBER_OF_BLOCKS;
+
+  /**
+   * The number of locks for the contents of blocks, block {@code n} is
+   * protected by stripe {@code n % STRIPES}.
+   */
+  static final int STRIPES = 16;
+
+  private static final int ALL_STRIPES = (1 << STRIPES) - 1;
+
+  /**
+   * Reads of up to this many bytes are first attempted without the lock.
+   */
+  static final int OPTIMISTIC_READ_LIMIT = 8192;
+
+  /**
+   * Returned by {@link #readOptimistically(byte[], long, int)} if the
+   * lock has to be taken.
+   */
+  private static final int OPTIMISTIC_READ_FAILED = -2;
+
+  /**
+   * Optimistic reads copy into this before they are validated so that a
+   * failed attempt leaves the destination untouched.
+   */
+  private static final ThreadLocal<byte[]> OPTIMISTIC_READ_BUFFER =
+          ThreadLocal.withInitial(() -> new byte[OPTIMISTIC_READ_LIMIT]);
+
+  private static final AtomicLongFieldUpdater<MemoryInode> SIZE_UPDATER =
+          AtomicLongFieldUpdater.newUpdater(MemoryInode.class, "size");
+
+  private static final AtomicLongFieldUpdater<MemoryInode> WRITES_STARTED_UPDATER =
+          AtomicLongFieldUpdater.newUpdater(MemoryInode.class, "writesStarted");
+
+  private static final AtomicLongFieldUpdater<MemoryInode> WRITES_FINISHED_UPDATER =
+          AtomicLongFieldUpdater.newUpdater(MemoryInode.class, "writesFinished");
+
   // lazily allocated, most files probably won't need this
   private LockSet lockSet;
 
   /**
-   * To store the contents efficiently we store the first {@value #BLOCK_SIZE}
-   * bytes in a {@value #BLOCK_SIZE} direct {@code byte[]}. The next
-   * {@value #NUMBER_OF_BLOCKS} * {@value #BLOCK_SIZE} bytes go into a indirect
-   * {@code byte[][]} that is lazily allocated.
+   * To store the contents efficiently we store the first {@link #blockSize}
+   * bytes in a {@link #blockSize} direct block. The next
+   * {@value #NUMBER_OF_BLOCKS} * {@link #blockSize} bytes go into a indirect
+   * {@code ByteBuffer[]} that is lazily allocated.
+   *
+   * <p>Bigger files use a double indirect {@code ByteBuffer[][]} for the next
+   * {@value #NUMBER_OF_BLOCKS}<sup>2</sup> blocks and a triple indirect
+   * {@code ByteBuffer[][][]} for the next {@value #NUMBER_OF_BLOCKS}<sup>3</sup>
+   * blocks. Every table level is lazily allocated as well so a block
+   * look up is at most four array accesses.</p>
+   *
+   * <p>The blocks themselves are allocated by {@link #allocator} and are
+   * either heap or direct buffers. The position and limit of a block are
+   * never changed, all access goes through {@link #slice(ByteBuffer, int, int)}.</p>
+   *
+   * <p>Copying a file does not copy the blocks, instead both files share
+   * read only views of them. The first write to a read only block replaces
+   * it with a writable copy, see {@link #getWritableBlock(long, int)}.</p>
+   *
+   * <p>Blocks are only allocated when they are written, a {@code null}
+   * block is a hole and reads as zeros.</p>
+   *
+   * <p>Most files are small so the direct block starts out just big enough
+   * for the first write and then grows geometrically until it reaches
+   * {@link #blockSize}. Unless it is a hole the direct block always
+   * covers the file up to {@code min(size, blockSize)}.</p>
    */
-  private byte[] directBlock;
-  private byte[][] indirectBlocks;
-
-  // TODO
-  // byte[][][] doubleIndirectBlocks
+  private ByteBuffer directBlock;
+  private ByteBuffer[] indirectBlocks;
+  private ByteBuffer[][] doubleIndirectBlocks;
+  private ByteBuffer[][][] tripleIndirectBlocks;
 
   // TODO max link count
 
-  private long size;
+  /**
+   * Only grows with the read lock held, see #increaseSize(long).
+   */
+  private volatile long size;
+
+  /**
+   * Lazily allocated, only needed once a file is written in parallel.
+   */
+  private StampedLock[] stripes;
+
+  /**
+   * Striped writes only hold the read lock, these let optimistic reads
+   * detect them.
+   */
+  private volatile long writesStarted;
+  private volatile long writesFinished;
 
-  private int indirectBlocksAllocated;
+  /**
+   * The number of hard links to this inode.
+   */
+  private int linkCount;
 
-  private final ReadWriteLock lock;
+  /**
+   * The number of streams or channels open on any of the hard links.
+   */
+  private int openCount;
 
-  MemoryInode(int initialBlocks) {
-    this.lock = new ReentrantReadWriteLock();
-    if (initialBlocks == 0) {
-      // TODO could be made smaller
-      this.directBlock = new byte[BLOCK_SIZE];
-    } else {
-      this.directBlock = new byte[BLOCK_SIZE];
+  /**
+   * The files sharing this inode, {@code null} as long as no hard link has
+   * been created.
+   */
+  private volatile MemoryFile[] links;
+
+  private final BlockAllocator allocator;
+
+  private final int blockSize;
+
+  private final StampedLock lock;
+
+  MemoryInode(BlockAllocator allocator, int initialBlocks) {
+    this.lock = new StampedLock();
+    this.allocator = allocator;
+    this.blockSize = allocator.getBlockSize();
+    this.linkCount = 1;
+    for (long i = 0L; i < initialBlocks; ++i) {
+      this.getWritableBlock(i, this.blockSize);
     }
-    if (initialBlocks > 1) {
-      this.indirectBlocks = new byte[BLOCK_SIZE][];
-      for (int i = 0; i < initialBlocks - 1; ++i) {
-        this.indirectBlocks[i] = new byte[BLOCK_SIZE];
+    this.size = 0L;
+  }
+
+  MemoryInode(BlockAllocator allocator, MemoryInode other) {
+    this.lock = new StampedLock();
+    this.allocator = allocator;
+    this.blockSize = allocator.getBlockSize();
+    this.linkCount = 1;
+    // we modify the blocks of other so we need the write lock
+    try (AutoRelease lock = other.writeLock()) {
+      // blocks can only be shared if they have been allocated the same way
+      boolean share = allocator.equals(other.allocator);
+      long end = other.blocksFor(other.size);
+      // blocks past the end of the file and holes don't have to be copied
+      for (long i = other.nextAllocatedBlock(0L, end); i != -1L; i = other.nextAllocatedBlock(i + 1L, end)) {
+        ByteBuffer block = other.getBlock(i);
+        if (this.blockSize != other.blockSize) {
+          // the contents have to be cut into blocks differently
+          long position = i * other.blockSize;
+          int length = (int) min(block.capacity(), other.size - position);
+          this.write(slice(block, 0, length), position, length);
+        } else if (share) {
+          if (!block.isReadOnly()) {
+            block = block.asReadOnlyBuffer();
+            other.setBlock(i, block);
+          }
+          this.setBlock(i, block);
+        } else {
+          this.setBlock(i, copyBlock(allocator, block));
+        }
       }
-      this.indirectBlocksAllocated = initialBlocks - 1;
+
+      this.size = other.size;
     }
-    this.size = 0L;
   }
 
-  MemoryInode(MemoryInode other) {
-    this.lock = new ReentrantReadWriteLock();
-    if (other.directBlock != null) {
-      this.directBlock = other.directBlock.clone();
+  private AutoRelease readLock() {
+    return autoRelease(this.lock.asReadLock());
+  }
+
+  private AutoRelease writeLock() {
+    return autoRelease(this.lock.asWriteLock());
+  }
+
+  /**
+   * Takes the read lock and the stripes of the given range so that no
+   * striped write to the range can be in progress.
+   */
+  private AutoRelease readLock(long position, long length) {
+    long stamp = this.lock.readLock();
+    StampedLock[] stripes = this.stripes;
+    int mask = stripes != null ? this.stripeMask(position, length) : 0;
+    for (int i = 0; i < STRIPES; ++i) {
+      if ((mask & (1 << i)) != 0) {
+        stripes[i].asReadLock().lock();
+      }
     }
+    return () -> {
+      unlockStripes(stripes, mask, true);
+      this.lock.unlockRead(stamp);
+    };
+  }
 
-    if (other.indirectBlocks != null) {
-      this.indirectBlocks = other.indirectBlocks.clone();
-      for (int i = 0; i < other.indirectBlocksAllocated; ++i) {
-        this.indirectBlocks[i] = other.indirectBlocks[i].clone();
+  /**
+   * Makes sure all blocks of the given range are allocated and writable
+   * and takes the read lock and the stripes of the range.
+   */
+  private AutoRelease stripedWriteLock(long position, long length) {
+    this.checkCapacity(position + length);
+    long firstBlock = position / this.blockSize;
+    long lastBlock = (position + length - 1L) / this.blockSize;
+    long readStamp = this.lock.readLock();
+    long missing = this.countMissingBlocks(firstBlock, lastBlock, position + length);
+    if (missing != 0L) {
+      this.lock.unlockRead(readStamp);
+      // allocate outside the lock so that other writers are not blocked
+      // while the blocks are zeroed
+      ByteBuffer[] spares = new ByteBuffer[(int) max(missing, 0L)];
+      for (int i = 0; i < spares.length; ++i) {
+        spares[i] = this.allocator.allocate(this.blockSize);
       }
+      long writeStamp = this.lock.writeLock();
+      this.prepareBlocks(firstBlock, lastBlock, position + length, spares);
+      readStamp = this.lock.tryConvertToReadLock(writeStamp);
     }
-    this.indirectBlocksAllocated = other.indirectBlocksAllocated;
+    long stamp = readStamp;
+    StampedLock[] stripes = this.stripes;
+    int mask = this.stripeMask(position, length);
+    for (int i = 0; i < STRIPES; ++i) {
+      if ((mask & (1 << i)) != 0) {
+        stripes[i].asWriteLock().lock();
+      }
+    }
+    WRITES_STARTED_UPDATER.incrementAndGet(this);
+    return () -> {
+      WRITES_FINISHED_UPDATER.incrementAndGet(this);
+      unlockStripes(stripes, mask, false);
+      this.lock.unlockRead(stamp);
+    };
+  }
 
-    this.size = other.size;
+  private static void unlockStripes(StampedLock[] stripes, int mask, boolean read) {
+    for (int i = 0; i < STRIPES; ++i) {
+      if ((mask & (1 << i)) != 0) {
+        Lock lock = read ? stripes[i].asReadLock() : stripes[i].asWriteLock();
+        lock.unlock();
+      }
+    }
   }
 
-  AutoRelease readLock() {
-    return autoRelease(this.lock.readLock());
+  private int stripeMask(long position, long length) {
+    if (length <= 0L) {
+      return 0;
+    }
+    if (length >= (long) STRIPES * this.blockSize) {
+      return ALL_STRIPES;
+    }
+    long firstBlock = position / this.blockSize;
+    long lastBlock = (position + length - 1L) / this.blockSize;
+    int mask = 0;
+    for (long i = firstBlock; i <= lastBlock; ++i) {
+      mask |= 1 << (int) (i % STRIPES);
+    }
+    return mask;
   }
 
-  AutoRelease writeLock() {
-    return autoRelease(this.lock.writeLock());
+  /**
+   * Counts the blocks that have to be allocated before the given range can
+   * be written with the read lock held.
+   *
+   * @return the number of blocks to allocate, {@code -1} if the write lock
+   *         is needed for other reasons, {@code 0} if the blocks are ready
+   */
+  private long countMissingBlocks(long firstBlock, long lastBlock, long end) {
+    if (this.stripes == null) {
+      return -1L;
+    }
+    if (this.directBlock != null && this.directBlock.capacity() < min(end, this.blockSize)) {
+      return -1L;
+    }
+    long missing = 0L;
+    boolean writable = true;
+    for (long i = firstBlock; i <= lastBlock; ++i) {
+      ByteBuffer block = this.getBlock(i);
+      if (block == null) {
+        if (i == 0L) {
+          writable = false;
+        } else {
+          missing += 1L;
+        }
+      } else if (block.isReadOnly()) {
+        writable = false;
+      }
+    }
+    if (missing == 0L && !writable) {
+      return -1L;
+    }
+    return missing;
   }
 
-  long size() {
-    try (AutoRelease lock = this.readLock()) {
-      return this.size;
+  /**
+   * Allocates, grows or copies the blocks of the given range, requires the
+   * write lock.
+   */
+  private void prepareBlocks(long firstBlock, long lastBlock, long end, ByteBuffer[] spares) {
+    if (this.stripes == null) {
+      StampedLock[] stripes = new StampedLock[STRIPES];
+      for (int i = 0; i < stripes.length; ++i) {
+        stripes[i] = new StampedLock();
+      }
+      this.stripes = stripes;
+    }
+    int spare = 0;
+    for (long i = firstBlock; i <= lastBlock; ++i) {
+      if (i != 0L && spare < spares.length && this.getBlock(i) == null) {
+        this.setBlock(i, spares[spare++]);
+      }
+      int endIndexInBlock = i == lastBlock ? (int) (end - (lastBlock * this.blockSize)) : this.blockSize;
+      this.getWritableBlock(i, endIndexInBlock);
     }
   }
 
-  long read(ByteBuffer dst, long position, long maximum) {
-    try (AutoRelease lock = this.readLock()) {
-      if (position >= this.size) {
-        return -1L;
+  /**
+   * Increases the size of the file, may be called concurrently by
+   * striped writes.
+   */
+  private void increaseSize(long newSize) {
+    long currentSize = this.size;
+    while (newSize > currentSize) {
+      if (SIZE_UPDATER.compareAndSet(this, currentSize, newSize)) {
+        return;
       }
-      long remaining = dst.remaining();
-      long toRead = min(min(this.size - position, remaining), maximum);
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
-      long read = 0L;
-      while (read < toRead) {
-        int lengthInBlock = (int) min(BLOCK_SIZE - startIndexInBlock, toRead - read);
+      currentSize = this.size;
+    }
+  }
 
-        byte[] block = this.getBlock(currentBlock);
-        dst.put(block, startIndexInBlock, lengthInBlock);
-        read += lengthInBlock;
+  /**
+   * Starts an optimistic read, returns {@code 0} if a write is in progress.
+   */
+  private long tryOptimisticRead() {
+    long stamp = this.lock.tryOptimisticRead();
+    if (stamp != 0L && this.writesStarted == this.writesFinished) {
+      return stamp;
+    }
+    return 0L;
+  }
 
-        startIndexInBlock = 0;
-        currentBlock += 1;
+  /**
+   * Validates an optimistic read, also fails if a striped write started
+   * during the read.
+   */
+  private boolean validate(long stamp, long writesStarted) {
+    return this.lock.validate(stamp) && this.writesStarted == writesStarted;
+  }
+
+  long size() {
+    return this.size;
+  }
+
+  /**
+   * Reads without taking the lock. The size and the blocks are read and
+   * validated first so that the blocks are known to be completely
+   * published, only then their contents are copied. The copy is validated
+   * again before it may be used.
+   *
+   * @param scratch where to copy the contents to, at least {@code length} long
+   * @param position the position in the file
+   * @param length the maximum number of bytes to read, positive
+   * @return the number of bytes read, {@code -1} if {@code position} is at
+   *         or past the end of the file, {@link #OPTIMISTIC_READ_FAILED} if
+   *         the lock has to be taken
+   */
+  private int readOptimistically(byte[] scratch, long position, int length) {
+    long writesStarted = this.writesStarted;
+    long stamp = this.tryOptimisticRead();
+    if (stamp == 0L) {
+      return OPTIMISTIC_READ_FAILED;
+    }
+    long size = this.size;
+    if (position >= size) {
+      return this.validate(stamp, writesStarted) ? -1 : OPTIMISTIC_READ_FAILED;
+    }
+    int toRead = (int) min(size - position, length);
+    long firstBlock = position / this.blockSize;
+    long lastBlock = (position + toRead - 1L) / this.blockSize;
+    if (lastBlock - firstBlock > 1L) {
+      // small block sizes, not worth collecting all the blocks
+      return OPTIMISTIC_READ_FAILED;
+    }
+    ByteBuffer first = this.getReadableBlock(firstBlock);
+    ByteBuffer second = lastBlock != firstBlock ? this.getReadableBlock(lastBlock) : null;
+    if (!this.validate(stamp, writesStarted)) {
+      return OPTIMISTIC_READ_FAILED;
+    }
+
+    int startIndexInBlock = (int) (position - (firstBlock * this.blockSize));
+    int lengthInFirst = min(this.blockSize - startIndexInBlock, toRead);
+    slice(first, startIndexInBlock, lengthInFirst).get(scratch, 0, lengthInFirst);
+    if (second != null) {
+      slice(second, 0, toRead - lengthInFirst).get(scratch, lengthInFirst, toRead - lengthInFirst);
+    }
+    // a write in the meantime may have changed the contents
+    return this.validate(stamp, writesStarted) ? toRead : OPTIMISTIC_READ_FAILED;
+  }
+
+  long read(ByteBuffer dst, long position, long maximum) {
+    long length = min(dst.remaining(), maximum);
+    if (length > 0L && length <= OPTIMISTIC_READ_LIMIT) {
+      byte[] scratch = OPTIMISTIC_READ_BUFFER.get();
+      int read = this.readOptimistically(scratch, position, (int) length);
+      if (read != OPTIMISTIC_READ_FAILED) {
+        if (read > 0) {
+          dst.put(scratch, 0, read);
+        }
+        return read;
       }
-      return read;
+    }
+    try (AutoRelease lock = this.readLock(position, min(dst.remaining(), maximum))) {
+      return this.readUnlocked(dst, position, maximum);
     }
   }
 
+  private long readUnlocked(ByteBuffer dst, long position, long maximum) {
+    if (position >= this.size) {
+      return -1L;
+    }
+    long remaining = dst.remaining();
+    long toRead = min(min(this.size - position, remaining), maximum);
+    long currentBlock = position / this.blockSize;
+    int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
+    long read = 0L;
+    while (read < toRead) {
+      int lengthInBlock = (int) min(this.blockSize - startIndexInBlock, toRead - read);
+
+      ByteBuffer block = this.getReadableBlock(currentBlock);
+      dst.put(slice(block, startIndexInBlock, lengthInBlock));
+      read += lengthInBlock;
+
+      startIndexInBlock = 0;
+      currentBlock += 1;
+    }
+    return read;
+  }
+
   int readShort(ByteBuffer dst, long position) throws IOException {
     return (int) this.read(dst, position, Integer.MAX_VALUE);
   }
 
   int read(byte[] dst, long position, int off, int len) {
-    try (AutoRelease lock = this.readLock()) {
-      if (position >= this.size) {
-        return -1;
+    if (len > 0 && len <= OPTIMISTIC_READ_LIMIT) {
+      byte[] scratch = OPTIMISTIC_READ_BUFFER.get();
+      int read = this.readOptimistically(scratch, position, len);
+      if (read != OPTIMISTIC_READ_FAILED) {
+        if (read > 0) {
+          System.arraycopy(scratch, 0, dst, off, read);
+        }
+        return read;
       }
-      int toRead = (int) min(min(this.size - position, len), Integer.MAX_VALUE);
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
-      int read = 0;
-      while (read < toRead) {
-        int lengthInBlock = min(BLOCK_SIZE - startIndexInBlock, toRead - read);
-
-        byte[] block = this.getBlock(currentBlock);
-        System.arraycopy(block, startIndexInBlock, dst, off + read, lengthInBlock);
-        read += lengthInBlock;
+    }
+    try (AutoRelease lock = this.readLock(position, len)) {
+      return this.readUnlocked(dst, position, off, len);
+    }
+  }
 
-        startIndexInBlock = 0;
-        currentBlock += 1;
-      }
-      return read;
+  private int readUnlocked(byte[] dst, long position, int off, int len) {
+    if (position >= this.size) {
+      return -1;
+    }
+    int toRead = (int) min(min(this.size - position, len), Integer.MAX_VALUE);
+    long currentBlock = position / this.blockSize;
+    int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
+    int read = 0;
+    while (read < toRead) {
+      int lengthInBlock = min(this.blockSize - startIndexInBlock, toRead - read);
+
+      ByteBuffer block = this.getReadableBlock(currentBlock);
+      slice(block, startIndexInBlock, lengthInBlock).get(dst, off + read, lengthInBlock);
+      read += lengthInBlock;
+
+      startIndexInBlock = 0;
+      currentBlock += 1;
     }
+    return read;
   }
 
   long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
     try (AutoRelease lock = this.writeLock()) {
-      this.ensureCapacity(position + count);
+      this.checkCapacity(position + count);
       long transferred = 0L;
       long toTransfer = count;
 
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
+      long currentBlock = position / this.blockSize;
+      int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
       while (transferred < toTransfer) {
-        int lengthInBlock = (int) min(BLOCK_SIZE - startIndexInBlock, toTransfer - transferred);
+        int lengthInBlock = (int) min(this.blockSize - startIndexInBlock, toTransfer - transferred);
 
-        byte[] block = this.getBlock(currentBlock);
+        ByteBuffer block = this.getWritableBlock(currentBlock, startIndexInBlock + lengthInBlock);
         // We can either allocate a new ByteBuffer for every iteration or keep
         // the buffer and copy the contents into it.
         // Since ByteBuffer objects are quite small and don't copy the contents
-        // of the backing array allocating a ByteBuffer is probably cheaper.
-        ByteBuffer buffer = ByteBuffer.wrap(block, startIndexInBlock, lengthInBlock);
+        // of the block allocating a ByteBuffer is probably cheaper.
+        ByteBuffer buffer = slice(block, startIndexInBlock, lengthInBlock);
         int read = readFully(buffer, src, lengthInBlock);
         transferred += read;
         if (read < lengthInBlock) {
@@ -182,28 +561,27 @@ final class MemoryInode {
         startIndexInBlock = 0;
         currentBlock += 1;
       }
-      // REVIEW, possibility to fill with random data
       this.size = max(this.size, position + transferred);
       return transferred;
     }
   }
 
   long transferTo(WritableByteChannel target, long position, long count) throws IOException {
-    try (AutoRelease lock = this.readLock()) {
+    try (AutoRelease lock = this.readLock(position, count)) {
       long transferred = 0L;
       long toTransfer = min(count, this.size - position);
 
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
+      long currentBlock = position / this.blockSize;
+      int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
       while (transferred < toTransfer) {
-        int lengthInBlock = (int) min(BLOCK_SIZE - startIndexInBlock, toTransfer - transferred);
+        int lengthInBlock = (int) min(this.blockSize - startIndexInBlock, toTransfer - transferred);
 
-        byte[] block = this.getBlock(currentBlock);
+        ByteBuffer block = this.getReadableBlock(currentBlock);
         // We can either allocate a new ByteBuffer for every iteration or keep
         // the buffer and copy the contents into it.
         // Since ByteBuffer objects are quite small and don't copy the contents
-        // of the backing array allocating a ByteBuffer is probably cheaper.
-        ByteBuffer buffer = ByteBuffer.wrap(block, startIndexInBlock, lengthInBlock);
+        // of the block allocating a ByteBuffer is probably cheaper.
+        ByteBuffer buffer = slice(block, startIndexInBlock, lengthInBlock);
         writeFully(buffer, target, lengthInBlock);
         transferred += lengthInBlock;
 
@@ -215,21 +593,72 @@ final class MemoryInode {
     }
   }
 
+  /**
+   * Transfers from a channel on this inode. The contents go through a
+   * buffer and the lock is only held while reading or writing it, the
+   * same way {@link java.nio.channels.FileChannel} transfers from
+   * arbitrary channels.
+   */
+  long transferFromSelf(ReadableByteChannel src, long position, long count) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) min(count, this.blockSize));
+    long transferred = 0L;
+    while (transferred < count) {
+      buffer.clear();
+      buffer.limit((int) min(buffer.capacity(), count - transferred));
+      int read = src.read(buffer);
+      if (read <= 0) {
+        break;
+      }
+      buffer.flip();
+      transferred += this.write(buffer, position + transferred, read);
+    }
+    return transferred;
+  }
+
+  /**
+   * Transfers to a channel on this inode, see
+   * {@link #transferFromSelf(ReadableByteChannel, long, long)}.
+   */
+  long transferToSelf(WritableByteChannel target, long position, long count) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) min(count, this.blockSize));
+    long transferred = 0L;
+    while (transferred < count) {
+      buffer.clear();
+      long read = this.read(buffer, position + transferred, count - transferred);
+      if (read <= 0L) {
+        break;
+      }
+      buffer.flip();
+      writeFully(buffer, target, (int) read);
+      transferred += read;
+    }
+    return transferred;
+  }
+
 
 
   long transferTo(OutputStream target, long position) throws IOException {
-    try (AutoRelease lock = this.readLock()) {
+    try (AutoRelease lock = this.readLock(position, Long.MAX_VALUE)) {
       long transferred = 0L;
       long toTransfer = this.size - position;
 
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
+      long currentBlock = position / this.blockSize;
+      int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
+      // only needed for direct blocks
+      byte[] buffer = null;
       while (transferred < toTransfer) {
-        int lengthInBlock = (int) min(BLOCK_SIZE - startIndexInBlock, toTransfer - transferred);
-
-        byte[] block = this.getBlock(currentBlock);
-
-        target.write(block, startIndexInBlock, lengthInBlock);
+        int lengthInBlock = (int) min(this.blockSize - startIndexInBlock, toTransfer - transferred);
+
+        ByteBuffer block = this.getReadableBlock(currentBlock);
+        if (block.hasArray()) {
+          target.write(block.array(), block.arrayOffset() + startIndexInBlock, lengthInBlock);
+        } else {
+          if (buffer == null) {
+            buffer = new byte[this.blockSize];
+          }
+          slice(block, startIndexInBlock, lengthInBlock).get(buffer, 0, lengthInBlock);
+          target.write(buffer, 0, lengthInBlock);
+        }
         transferred += lengthInBlock;
 
         startIndexInBlock = 0;
@@ -241,28 +670,41 @@ final class MemoryInode {
   }
 
   long write(ByteBuffer src, long position, long maximum) {
-    try (AutoRelease lock = this.writeLock()) {
-      long remaining = src.remaining();
-      this.ensureCapacity(position + remaining);
+    long toWrite = min(src.remaining(), maximum);
+    if (position + toWrite <= this.blockSize) {
+      // only the direct block, nothing to do in parallel
+      try (AutoRelease lock = this.writeLock()) {
+        return this.writeUnlocked(src, position, maximum);
+      }
+    }
+    try (AutoRelease lock = this.stripedWriteLock(position, toWrite)) {
+      return this.writeUnlocked(src, position, maximum);
+    }
+  }
 
-      long toWrite = min(remaining, maximum);
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
-      long written = 0L;
-      while (written < toWrite) {
-        int lengthInBlock = (int) min((long) BLOCK_SIZE - startIndexInBlock, toWrite - written);
+  private long writeUnlocked(ByteBuffer src, long position, long maximum) {
+    long remaining = src.remaining();
+    this.checkCapacity(position + remaining);
 
-        byte[] block = this.getBlock(currentBlock);
-        src.get(block, startIndexInBlock, lengthInBlock);
-        written += lengthInBlock;
+    long toWrite = min(remaining, maximum);
+    long currentBlock = position / this.blockSize;
+    int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
+    long written = 0L;
+    while (written < toWrite) {
+      int lengthInBlock = (int) min((long) this.blockSize - startIndexInBlock, toWrite - written);
 
-        startIndexInBlock = 0;
-        currentBlock += 1;
-      }
-      // REVIEW, possibility to fill with random data
-      this.size = max(this.size, position + written);
-      return written;
+      ByteBuffer block = this.getWritableBlock(currentBlock, startIndexInBlock + lengthInBlock);
+      int limit = src.limit();
+      src.limit(src.position() + lengthInBlock);
+      slice(block, startIndexInBlock, lengthInBlock).put(src);
+      src.limit(limit);
+      written += lengthInBlock;
+
+      startIndexInBlock = 0;
+      currentBlock += 1;
     }
+    this.increaseSize(position + written);
+    return written;
   }
 
   int writeShort(ByteBuffer src, long position) {
@@ -270,55 +712,243 @@ final class MemoryInode {
   }
 
   int write(byte[] src, long position, int off, int len) {
-    try (AutoRelease lock = this.writeLock()) {
-      this.ensureCapacity(position + len);
+    if (position + len <= this.blockSize) {
+      // only the direct block, nothing to do in parallel
+      try (AutoRelease lock = this.writeLock()) {
+        return this.writeUnlocked(src, position, off, len);
+      }
+    }
+    try (AutoRelease lock = this.stripedWriteLock(position, len)) {
+      return this.writeUnlocked(src, position, off, len);
+    }
+  }
 
-      int toWrite = min(len, Integer.MAX_VALUE);
-      int currentBlock = (int) (position / BLOCK_SIZE);
-      int startIndexInBlock = (int) (position - (currentBlock * (long) BLOCK_SIZE));
-      int written = 0;
-      while (written < toWrite) {
-        int lengthInBlock = min(BLOCK_SIZE - startIndexInBlock, toWrite - written);
+  private int writeUnlocked(byte[] src, long position, int off, int len) {
+    this.checkCapacity(position + len);
+
+    int toWrite = min(len, Integer.MAX_VALUE);
+    long currentBlock = position / this.blockSize;
+    int startIndexInBlock = (int) (position - (currentBlock * this.blockSize));
+    int written = 0;
+    while (written < toWrite) {
+      int lengthInBlock = min(this.blockSize - startIndexInBlock, toWrite - written);
 
-        byte[] block = this.getBlock(currentBlock);
-        System.arraycopy(src, off + written, block, startIndexInBlock, lengthInBlock);
-        written += lengthInBlock;
+      ByteBuffer block = this.getWritableBlock(currentBlock, startIndexInBlock + lengthInBlock);
+      slice(block, startIndexInBlock, lengthInBlock).put(src, off + written, lengthInBlock);
+      written += lengthInBlock;
 
-        startIndexInBlock = 0;
-        currentBlock += 1;
-      }
-      // REVIEW, possibility to fill with random data
-      this.size = max(this.size, position + written);
-      return written;
+      startIndexInBlock = 0;
+      currentBlock += 1;
     }
+    this.increaseSize(position + written);
+    return written;
   }
 
   long writeAtEnd(ByteBuffer src, long maximum) {
     try (AutoRelease lock = this.writeLock()) {
-      return this.write(src, this.size, maximum);
+      return this.writeUnlocked(src, this.size, maximum);
     }
   }
 
   int writeAtEnd(ByteBuffer src) {
     try (AutoRelease lock = this.writeLock()) {
-      return this.writeShort(src, this.size);
+      return (int) this.writeUnlocked(src, this.size, Integer.MAX_VALUE);
     }
   }
 
   int writeAtEnd(byte[] src, int off, int len) {
     try (AutoRelease lock = this.writeLock()) {
-      return this.write(src, this.size, off, len);
+      return this.writeUnlocked(src, this.size, off, len);
     }
   }
 
-  void truncate(long newSize) {
+  /**
+   * Returns the start of the next region that contains data.
+   *
+   * @param position the position from which to start searching, not negative
+   * @return {@code position} if it is in data, otherwise the start of the
+   *         next allocated block, {@code -1} if there is no more data
+   */
+  long nextData(long position) {
+    try (AutoRelease lock = this.readLock()) {
+      if (position >= this.size) {
+        return -1L;
+      }
+      long block = this.nextAllocatedBlock(position / this.blockSize, this.blocksFor(this.size));
+      if (block == -1L) {
+        return -1L;
+      }
+      return max(position, block * this.blockSize);
+    }
+  }
+
+  /**
+   * Returns the start of the next hole. The end of the file is treated
+   * as a hole.
+   *
+   * @param position the position from which to start searching, not negative
+   * @return {@code position} if it is in a hole, otherwise the start of the
+   *         next hole, {@code -1} if {@code position} is past the end of the file
+   */
+  long nextHole(long position) {
+    try (AutoRelease lock = this.readLock()) {
+      if (position >= this.size) {
+        return -1L;
+      }
+      long end = this.blocksFor(this.size);
+      long currentBlock = position / this.blockSize;
+      while (currentBlock < end && this.getBlock(currentBlock) != null) {
+        currentBlock += 1L;
+      }
+      return min(max(position, currentBlock * this.blockSize), this.size);
+    }
+  }
+
+  /**
+   * Called when a new hard link to this inode has been created.
+   *
+   * @param existing the file the link was created for
+   * @param link the new hard link
+   */
+  void linked(MemoryFile existing, MemoryFile link) {
+    try (AutoRelease lock = this.writeLock()) {
+      this.linkCount += 1;
+      MemoryFile[] current = this.links;
+      if (current == null) {
+        this.links = new MemoryFile[] {existing, link};
+      } else {
+        MemoryFile[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = link;
+        this.links = updated;
+      }
+    }
+  }
+
+  /**
+   * Called when a hard link to this inode has been deleted. Once the
+   * last hard link is deleted and the last stream or channel is closed all
+   * blocks are released.
+   *
+   * @param link the deleted hard link
+   */
+  void unlinked(MemoryFile link) {
+    try (AutoRelease lock = this.writeLock()) {
+      this.linkCount -= 1;
+      MemoryFile[] current = this.links;
+      if (current != null) {
+        int index = Arrays.asList(current).indexOf(link);
+        if (index != -1) {
+          MemoryFile[] updated = new MemoryFile[current.length - 1];
+          System.arraycopy(current, 0, updated, 0, index);
+          System.arraycopy(current, index + 1, updated, index, updated.length - index);
+          this.links = updated;
+        }
+      }
+      if (this.linkCount == 0 && this.openCount == 0) {
+        this.releaseBlocks();
+      }
+    }
+  }
+
+  /**
+   * Called when a stream or channel has been opened on a hard link to this
+   * inode.
+   */
+  void opened() {
+    try (AutoRelease lock = this.writeLock()) {
+      this.openCount += 1;
+    }
+  }
+
+  /**
+   * Called when a stream or channel on a hard link to this inode has been
+   * closed. Releases all blocks if it was the last one of a deleted file.
+   */
+  void closed() {
+    try (AutoRelease lock = this.writeLock()) {
+      this.openCount -= 1;
+      if (this.linkCount == 0 && this.openCount == 0) {
+        this.releaseBlocks();
+      }
+    }
+  }
+
+  MemoryFile[] getLinks() {
+    return this.links;
+  }
+
+  private void releaseBlocks() {
+    // direct blocks are only freed once they are no longer reachable
+    this.directBlock = null;
+    this.indirectBlocks = null;
+    this.doubleIndirectBlocks = null;
+    this.tripleIndirectBlocks = null;
+    this.size = 0L;
+  }
+
+  boolean truncate(long newSize) {
     try (AutoRelease lock = this.writeLock()) {
       if (newSize < this.size) {
         this.size = newSize;
+        this.releaseBlocksFrom(this.blocksFor(newSize));
+        this.zeroTail();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Releases all blocks starting with the given block as well as the
+   * tables that no longer hold any block.
+   */
+  private void releaseBlocksFrom(long firstBlock) {
+    // blocks past the end of the file may have been allocated up front
+    for (long i = this.nextAllocatedBlock(firstBlock, MAX_BLOCKS); i != -1L; i = this.nextAllocatedBlock(i + 1L, MAX_BLOCKS)) {
+      this.setBlock(i, null);
+    }
+
+    if (firstBlock <= 1L) {
+      this.indirectBlocks = null;
+    }
+    if (firstBlock <= DOUBLE_INDIRECT_OFFSET) {
+      this.doubleIndirectBlocks = null;
+    } else if (firstBlock < TRIPLE_INDIRECT_OFFSET && this.doubleIndirectBlocks != null) {
+      // the first table that no longer holds a block
+      long firstTable = ((firstBlock - DOUBLE_INDIRECT_OFFSET - 1L) / NUMBER_OF_BLOCKS) + 1L;
+      Arrays.fill(this.doubleIndirectBlocks, (int) firstTable, NUMBER_OF_BLOCKS, null);
+    }
+    if (firstBlock <= TRIPLE_INDIRECT_OFFSET) {
+      this.tripleIndirectBlocks = null;
+    } else if (this.tripleIndirectBlocks != null) {
+      long firstTable = ((firstBlock - TRIPLE_INDIRECT_OFFSET - 1L) / NUMBER_OF_BLOCKS) + 1L;
+      long firstTableOfTables = ((firstTable - 1L) / NUMBER_OF_BLOCKS) + 1L;
+      Arrays.fill(this.tripleIndirectBlocks, (int) firstTableOfTables, NUMBER_OF_BLOCKS, null);
+      ByteBuffer[][] lastTableOfTables = this.tripleIndirectBlocks[(int) (firstTableOfTables - 1L)];
+      if (lastTableOfTables != null) {
+        Arrays.fill(lastTableOfTables, (int) (firstTable - (firstTableOfTables - 1L) * NUMBER_OF_BLOCKS), NUMBER_OF_BLOCKS, null);
       }
     }
   }
 
+  /**
+   * Zeros the part of the last block after the end of the file so that
+   * growing the file again does not expose the old contents.
+   */
+  private void zeroTail() {
+    int startIndexInBlock = (int) (this.size % this.blockSize);
+    if (startIndexInBlock == 0) {
+      return;
+    }
+    long lastBlock = this.size / this.blockSize;
+    if (this.getBlock(lastBlock) == null) {
+      return;
+    }
+    int end = this.getBlock(lastBlock).capacity();
+    int length = end - startIndexInBlock;
+    slice(this.getWritableBlock(lastBlock, end), startIndexInBlock, length).put(slice(this.allocator.zeros(), 0, length));
+  }
+
   MemoryFileLock tryLock(MemoryFileLock lock) {
     try (AutoRelease autoRelease = this.writeLock()) {
       return this.lockSet().tryLock(lock);
@@ -348,12 +978,231 @@ final class MemoryInode {
   //
   //  void modified();
 
-  private byte[] getBlock(int currentBlock) {
-    if (currentBlock == 0) {
+  /**
+   * Returns a block or {@code null} if the block is a hole.
+   */
+  private ByteBuffer getBlock(long currentBlock) {
+    if (currentBlock == 0L) {
       return this.directBlock;
+    } else if (currentBlock < DOUBLE_INDIRECT_OFFSET) {
+      if (this.indirectBlocks == null) {
+        return null;
+      }
+      return this.indirectBlocks[(int) (currentBlock - 1L)];
+    } else if (currentBlock < TRIPLE_INDIRECT_OFFSET) {
+      if (this.doubleIndirectBlocks == null) {
+        return null;
+      }
+      long index = currentBlock - DOUBLE_INDIRECT_OFFSET;
+      ByteBuffer[] table = this.doubleIndirectBlocks[(int) (index / NUMBER_OF_BLOCKS)];
+      if (table == null) {
+        return null;
+      }
+      return table[(int) (index % NUMBER_OF_BLOCKS)];
     } else {
-      return this.indirectBlocks[currentBlock - 1];
+      if (this.tripleIndirectBlocks == null) {
+        return null;
+      }
+      long index = currentBlock - TRIPLE_INDIRECT_OFFSET;
+      long tableIndex = index / NUMBER_OF_BLOCKS;
+      ByteBuffer[][] firstTable = this.tripleIndirectBlocks[(int) (tableIndex / NUMBER_OF_BLOCKS)];
+      if (firstTable == null) {
+        return null;
+      }
+      ByteBuffer[] secondTable = firstTable[(int) (tableIndex % NUMBER_OF_BLOCKS)];
+      if (secondTable == null) {
+        return null;
+      }
+      return secondTable[(int) (index % NUMBER_OF_BLOCKS)];
+    }
+  }
+
+  /**
+   * Returns a block for reading, holes are returned as a block of zeros.
+   */
+  private ByteBuffer getReadableBlock(long currentBlock) {
+    ByteBuffer block = this.getBlock(currentBlock);
+    if (block == null) {
+      return this.allocator.zeros();
+    }
+    return block;
+  }
+
+  /**
+   * Returns the index of the first allocated block, skips missing tables
+   * without looking at every block.
+   *
+   * @param from the first block index to look at, inclusive
+   * @param end the last block index to look at, exclusive
+   * @return the index of the first allocated block or {@code -1} if
+   *         there is none
+   */
+  private long nextAllocatedBlock(long from, long end) {
+    long currentBlock = from;
+    while (currentBlock < end) {
+      if (currentBlock == 0L) {
+        if (this.directBlock != null) {
+          return currentBlock;
+        }
+        currentBlock += 1L;
+      } else if (currentBlock < DOUBLE_INDIRECT_OFFSET) {
+        if (this.indirectBlocks == null) {
+          currentBlock = DOUBLE_INDIRECT_OFFSET;
+        } else if (this.indirectBlocks[(int) (currentBlock - 1L)] != null) {
+          return currentBlock;
+        } else {
+          currentBlock += 1L;
+        }
+      } else if (currentBlock < TRIPLE_INDIRECT_OFFSET) {
+        if (this.doubleIndirectBlocks == null) {
+          currentBlock = TRIPLE_INDIRECT_OFFSET;
+          continue;
+        }
+        long index = currentBlock - DOUBLE_INDIRECT_OFFSET;
+        long tableIndex = index / NUMBER_OF_BLOCKS;
+        ByteBuffer[] table = this.doubleIndirectBlocks[(int) tableIndex];
+        if (table == null) {
+          currentBlock = DOUBLE_INDIRECT_OFFSET + (tableIndex + 1L) * NUMBER_OF_BLOCKS;
+        } else if (table[(int) (index % NUMBER_OF_BLOCKS)] != null) {
+          return currentBlock;
+        } else {
+          currentBlock += 1L;
+        }
+      } else {
+        if (this.tripleIndirectBlocks == null) {
+          return -1L;
+        }
+        long index = currentBlock - TRIPLE_INDIRECT_OFFSET;
+        long tableIndex = index / NUMBER_OF_BLOCKS;
+        long firstIndex = tableIndex / NUMBER_OF_BLOCKS;
+        ByteBuffer[][] firstTable = this.tripleIndirectBlocks[(int) firstIndex];
+        if (firstTable == null) {
+          currentBlock = TRIPLE_INDIRECT_OFFSET + (firstIndex + 1L) * NUMBER_OF_BLOCKS * NUMBER_OF_BLOCKS;
+          continue;
+        }
+        ByteBuffer[] secondTable = firstTable[(int) (tableIndex % NUMBER_OF_BLOCKS)];
+        if (secondTable == null) {
+          currentBlock = TRIPLE_INDIRECT_OFFSET + (tableIndex + 1L) * NUMBER_OF_BLOCKS;
+        } else if (secondTable[(int) (index % NUMBER_OF_BLOCKS)] != null) {
+          return currentBlock;
+        } else {
+          currentBlock += 1L;
+        }
+      }
     }
+    return -1L;
+  }
+
+  /**
+   * Returns a block for writing. If the block is a hole it is allocated,
+   * if the block is shared with a copy of this file it is copied first.
+   *
+   * @param endIndexInBlock the index in the block up to which will be written,
+   *        exclusive, only used for the direct block
+   */
+  private ByteBuffer getWritableBlock(long currentBlock, int endIndexInBlock) {
+    if (currentBlock == 0L) {
+      return this.getWritableDirectBlock(endIndexInBlock);
+    }
+    if (this.directBlock != null && this.directBlock.capacity() < this.blockSize) {
+      // the file grows past the direct block
+      this.getWritableDirectBlock(this.blockSize);
+    }
+    ByteBuffer block = this.getBlock(currentBlock);
+    if (block == null) {
+      block = this.allocator.allocate(this.blockSize);
+      this.setBlock(currentBlock, block);
+    } else if (block.isReadOnly()) {
+      block = copyBlock(this.allocator, block);
+      this.setBlock(currentBlock, block);
+    }
+    return block;
+  }
+
+  /**
+   * Returns the direct block for writing, allocates, grows or copies it
+   * as needed.
+   */
+  private ByteBuffer getWritableDirectBlock(int endIndexInBlock) {
+    ByteBuffer block = this.directBlock;
+    // a hole in a bigger file has to be filled completely
+    int required = (int) max(endIndexInBlock, min(this.size, this.blockSize));
+    if (block == null) {
+      block = this.allocator.allocate(required);
+      this.directBlock = block;
+    } else if (block.capacity() < required) {
+      int capacity = max(required, min(block.capacity() * 2, this.blockSize));
+      ByteBuffer grown = this.allocator.allocate(capacity);
+      grown.put(slice(block, 0, block.capacity()));
+      block = grown;
+      this.directBlock = block;
+    } else if (block.isReadOnly()) {
+      block = copyBlock(this.allocator, block);
+      this.directBlock = block;
+    }
+    return block;
+  }
+
+  private static ByteBuffer copyBlock(BlockAllocator allocator, ByteBuffer block) {
+    ByteBuffer copy = allocator.allocate(block.capacity());
+    copy.put(slice(block, 0, block.capacity()));
+    return copy;
+  }
+
+  /**
+   * Stores a block, lazily allocates the tables on the way.
+   */
+  private void setBlock(long currentBlock, ByteBuffer block) {
+    if (currentBlock == 0L) {
+      this.directBlock = block;
+    } else if (currentBlock < DOUBLE_INDIRECT_OFFSET) {
+      if (this.indirectBlocks == null) {
+        this.indirectBlocks = new ByteBuffer[NUMBER_OF_BLOCKS];
+      }
+      this.indirectBlocks[(int) (currentBlock - 1L)] = block;
+    } else if (currentBlock < TRIPLE_INDIRECT_OFFSET) {
+      if (this.doubleIndirectBlocks == null) {
+        this.doubleIndirectBlocks = new ByteBuffer[NUMBER_OF_BLOCKS][];
+      }
+      long index = currentBlock - DOUBLE_INDIRECT_OFFSET;
+      int firstIndex = (int) (index / NUMBER_OF_BLOCKS);
+      ByteBuffer[] table = this.doubleIndirectBlocks[firstIndex];
+      if (table == null) {
+        table = new ByteBuffer[NUMBER_OF_BLOCKS];
+        this.doubleIndirectBlocks[firstIndex] = table;
+      }
+      table[(int) (index % NUMBER_OF_BLOCKS)] = block;
+    } else {
+      if (this.tripleIndirectBlocks == null) {
+        this.tripleIndirectBlocks = new ByteBuffer[NUMBER_OF_BLOCKS][][];
+      }
+      long index = currentBlock - TRIPLE_INDIRECT_OFFSET;
+      long tableIndex = index / NUMBER_OF_BLOCKS;
+      int firstIndex = (int) (tableIndex / NUMBER_OF_BLOCKS);
+      int secondIndex = (int) (tableIndex % NUMBER_OF_BLOCKS);
+      ByteBuffer[][] firstTable = this.tripleIndirectBlocks[firstIndex];
+      if (firstTable == null) {
+        firstTable = new ByteBuffer[NUMBER_OF_BLOCKS][];
+        this.tripleIndirectBlocks[firstIndex] = firstTable;
+      }
+      ByteBuffer[] secondTable = firstTable[secondIndex];
+      if (secondTable == null) {
+        secondTable = new ByteBuffer[NUMBER_OF_BLOCKS];
+        firstTable[secondIndex] = secondTable;
+      }
+      secondTable[(int) (index % NUMBER_OF_BLOCKS)] = block;
+    }
+  }
+
+  /**
+   * Creates a view of a part of a block. The view can be modified
+   * without affecting the position and limit of the block.
+   */
+  private static ByteBuffer slice(ByteBuffer block, int startIndexInBlock, int length) {
+    ByteBuffer slice = block.duplicate();
+    slice.limit(startIndexInBlock + length);
+    slice.position(startIndexInBlock);
+    return slice;
   }
 
   private static int writeFully(ByteBuffer src, WritableByteChannel target, int toWrite) throws IOException {
@@ -376,29 +1225,20 @@ final class MemoryInode {
     return total;
   }
 
-  private void ensureCapacity(long capacity) {
-    // if direct block is enough do nothing
-    if (capacity <= BLOCK_SIZE) {
-      return;
-    }
-
-    // lazily allocate indirect blocks
-    if (this.indirectBlocks == null) {
-      this.indirectBlocks = new byte[NUMBER_OF_BLOCKS][];
-    }
-
-    int blocksRequired = (int) ((capacity - 1L)/ BLOCK_SIZE); // consider already present direct block, don't add + 1
-
-    if (blocksRequired > NUMBER_OF_BLOCKS) {
-      // FIXME implement double indirect addressing
-      throw new AssertionError("files bigger than 16MB not yet supported");
+  /**
+   * Returns the number of blocks needed to store the given number of bytes.
+   */
+  private long blocksFor(long bytes) {
+    if (bytes <= 0L) {
+      return 0L;
     }
+    return ((bytes - 1L) / this.blockSize) + 1L;
+  }
 
-    if (blocksRequired > this.indirectBlocksAllocated) {
-      for (int i = this.indirectBlocksAllocated; i < blocksRequired; ++i) {
-        this.indirectBlocks[i] = new byte[BLOCK_SIZE];
-        this.indirectBlocksAllocated += 1;
-      }
+  private void checkCapacity(long capacity) {
+    // blocks are allocated when they are written, we only check the limit
+    if (this.blocksFor(capacity) > MAX_BLOCKS) {
+      throw new AssertionError("files bigger than " + (MAX_BLOCKS * this.blockSize) + " bytes not supported");
     }
   }
 
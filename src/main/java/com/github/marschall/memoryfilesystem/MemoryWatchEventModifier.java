@@ -0,0 +1,28 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.nio.file.WatchEvent;
+
+/**
+ * Modifiers for registering directories of a memory file system with a
+ * {@link java.nio.file.WatchService}.
+ *
+ * @see java.nio.file.Path#register(java.nio.file.WatchService, WatchEvent.Kind[], WatchEvent.Modifier...)
+ */
+public enum MemoryWatchEventModifier implements WatchEvent.Modifier {
+
+  /**
+   * Watches all directories below the registered directory as well.
+   *
+   * <p>A single key is signaled for changes anywhere in the tree, the
+   * context of an event is the path of the entry relative to the registered
+   * directory. Directories moved into the tree are watched as well, those
+   * moved out of it are no longer watched. Signaling an event costs one
+   * step per directory between the entry and the root, independent of the
+   * number of directories in the tree.</p>
+   *
+   * <p>{@code com.sun.nio.file.ExtendedWatchEventModifier.FILE_TREE} is
+   * accepted as well.</p>
+   */
+  FILE_TREE;
+
+}
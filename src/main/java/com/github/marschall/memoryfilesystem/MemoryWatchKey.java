@@ -2,35 +2,62 @@ package com.github.marschall.memoryfilesystem;
 
 import static com.github.marschall.memoryfilesystem.MemoryWatchKey.State.READY;
 import static com.github.marschall.memoryfilesystem.MemoryWatchKey.State.SIGNALLED;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
 
+import java.nio.file.Path;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A key watching a directory and, with
+ * {@link MemoryWatchEventModifier#FILE_TREE}, all directories below it.
+ *
+ * <p>Events are pushed by {@link MemoryDirectory} and {@link MemoryFile}
+ * as they happen. A key is queued with its watch service when the first
+ * event arrives and stays out of the queue until it is reset.</p>
+ */
 final class MemoryWatchKey implements WatchKey {
 
+  /**
+   * The default maximum number of events accumulated before an overflow
+   * event is signaled, the same as the default file system.
+   */
+  static final int DEFAULT_EVENT_CAPACITY = 512;
+
   private final AbstractPath path;
+  private final MemoryDirectory directory;
   private final Lock lock;
-  private boolean isOverflow;
+  private final int capacity;
+  // accumulated and counting the dropped events, null if no events were dropped
+  private OverflowWatchEvent overflow;
   private State state;
-  private boolean valid;
-  private final Set<Kind<?>> events;
+  private volatile boolean valid;
+  private volatile Set<Kind<?>> events;
+  private volatile boolean fileTree;
   private List<WatchEvent<?>> accumulatedEvents;
-  private Map<AbstractPath, Integer> accumulatedModificationEvents;
-  private List<WatchEvent<?>> pendingEvents;
+  // the last modification event of every context, repeated modifications only increment the count
+  private Map<String, ModificationWatchEvent> accumulatedModificationEvents;
   private final MemoryFileSystemWatchService watcher;
 
-  MemoryWatchKey(AbstractPath path, MemoryFileSystemWatchService watcher, Set<Kind<?>> events) {
+  MemoryWatchKey(AbstractPath path, MemoryDirectory directory, MemoryFileSystemWatchService watcher,
+          Set<Kind<?>> events, boolean fileTree, int capacity) {
     this.path = path;
+    this.fileTree = fileTree;
+    this.capacity = capacity;
+    this.directory = directory;
     this.watcher = watcher;
     this.events = events;
     this.state = READY;
+    this.valid = true;
     this.lock = new ReentrantLock();
   }
 
@@ -38,18 +65,148 @@ final class MemoryWatchKey implements WatchKey {
     return this.events.contains(event);
   }
 
-  @Override
-  public List<WatchEvent<?>> pollEvents() {
+  void update(Set<Kind<?>> events, boolean fileTree) {
+    this.events = events;
+    this.fileTree = fileTree;
+  }
+
+  boolean isFileTree() {
+    return this.fileTree;
+  }
+
+  MemoryFileSystemWatchService getWatcher() {
+    return this.watcher;
+  }
+
+  /**
+   * Adds an event for an entry of the watched directory or, if the whole
+   * tree is watched, of a directory below it.
+   *
+   * @param kind the kind of the event
+   * @param parent the directory containing the entry
+   * @param name the original name of the entry
+   */
+  void signal(Kind<Path> kind, MemoryDirectory parent, String name) {
+    if (!this.valid || !this.accepts(kind)) {
+      return;
+    }
+    String context;
+    if (parent == this.directory) {
+      context = name;
+    } else {
+      context = this.relativize(parent, name);
+      if (context == null) {
+        // moved out of the tree concurrently
+        return;
+      }
+    }
     try (AutoRelease autoRelease = AutoReleaseLock.autoRelease(this.lock)) {
-      if (this.state != SIGNALLED) {
-        // TODO throw exception?
+      if (!this.valid) {
+        return;
       }
+      this.addEvent(kind, context);
+    }
+  }
 
-      if (this.pendingEvents == null) {
+  /**
+   * Builds the path of an entry relative to the watched directory.
+   *
+   * @return the relative path, {@code null} if the entry is not below the
+   *         watched directory
+   */
+  private String relativize(MemoryDirectory parent, String name) {
+    String separator = this.path.getMemoryFileSystem().getSeparator();
+    StringBuilder buffer = new StringBuilder(name);
+    MemoryDirectory current = parent;
+    while (current != this.directory) {
+      if (current == null) {
+        return null;
+      }
+      buffer.insert(0, separator);
+      buffer.insert(0, current.getOriginalName());
+      current = current.getParent();
+    }
+    return buffer.toString();
+  }
+
+  // has to be called while holding the lock
+  private void addEvent(Kind<Path> kind, String context) {
+    if (kind == ENTRY_MODIFY) {
+      ModificationWatchEvent previous = this.getModificationEvent(context);
+      if (previous != null) {
+        // the key has already been signaled for the previous event
+        previous.increment();
+        return;
+      }
+    } else if (this.accumulatedModificationEvents != null) {
+      // keep the order of modifications relative to creation and deletion
+      this.accumulatedModificationEvents.remove(context);
+    }
+
+    if (this.accumulatedEvents == null) {
+      this.accumulatedEvents = new ArrayList<>();
+    }
+    if (this.overflow != null) {
+      this.overflow.increment();
+      return;
+    }
+    if (this.accumulatedEvents.size() >= this.capacity) {
+      this.overflow = new OverflowWatchEvent();
+      this.accumulatedEvents.add(this.overflow);
+    } else {
+      Path contextPath = this.path.getMemoryFileSystem().getPath(context);
+      if (kind == ENTRY_MODIFY) {
+        ModificationWatchEvent event = new ModificationWatchEvent(contextPath, 1);
+        if (this.accumulatedModificationEvents == null) {
+          this.accumulatedModificationEvents = new HashMap<>();
+        }
+        this.accumulatedModificationEvents.put(context, event);
+        this.accumulatedEvents.add(event);
+      } else {
+        this.accumulatedEvents.add(new KindWatchEvent(contextPath, kind));
+      }
+    }
+    this.signalled();
+  }
+
+  private ModificationWatchEvent getModificationEvent(String context) {
+    if (this.accumulatedModificationEvents == null) {
+      return null;
+    }
+    return this.accumulatedModificationEvents.get(context);
+  }
+
+  // has to be called while holding the lock
+  private void signalled() {
+    if (this.state == READY) {
+      this.state = SIGNALLED;
+      this.watcher.enqueue(this);
+    }
+  }
+
+  /**
+   * Returns the number of modification events that further modifications
+   * of the same entry are coalesced into.
+   */
+  int getModificationEventCount() {
+    try (AutoRelease autoRelease = AutoReleaseLock.autoRelease(this.lock)) {
+      if (this.accumulatedModificationEvents == null) {
+        return 0;
+      }
+      return this.accumulatedModificationEvents.size();
+    }
+  }
+
+  @Override
+  public List<WatchEvent<?>> pollEvents() {
+    try (AutoRelease autoRelease = AutoReleaseLock.autoRelease(this.lock)) {
+      if (this.accumulatedEvents == null) {
         return Collections.emptyList();
       }
-      List<WatchEvent<?>> result = this.pendingEvents;
-      this.pendingEvents = null;
+      List<WatchEvent<?>> result = this.accumulatedEvents;
+      this.accumulatedEvents = null;
+      this.accumulatedModificationEvents = null;
+      this.overflow = null;
       return result;
     }
   }
@@ -60,11 +217,14 @@ final class MemoryWatchKey implements WatchKey {
       if (!this.valid) {
         return false;
       }
-      if (this.pendingEvents != null) {
-        // TODO requeue
-        this.state = READY;
+      if (this.state == SIGNALLED) {
+        if (this.accumulatedEvents == null || this.accumulatedEvents.isEmpty()) {
+          this.state = READY;
+        } else {
+          // events arrived since they were last polled
+          this.watcher.enqueue(this);
+        }
       }
-
       return true;
     }
   }
@@ -73,15 +233,29 @@ final class MemoryWatchKey implements WatchKey {
   public void cancel() {
     try (AutoRelease autoRelease = AutoReleaseLock.autoRelease(this.lock)) {
       this.valid = false;
-      // TODO actually cancel registration
     }
+    this.directory.removeWatchKey(this);
+    this.watcher.cancelled(this);
   }
 
-  @Override
-  public boolean isValid() {
+  /**
+   * Cancels the key because the watched directory was deleted, the key is
+   * queued so that the consumer notices.
+   */
+  void invalidate() {
     try (AutoRelease autoRelease = AutoReleaseLock.autoRelease(this.lock)) {
-      return this.valid;
+      if (!this.valid) {
+        return;
+      }
+      this.valid = false;
+      this.signalled();
     }
+    this.watcher.cancelled(this);
+  }
+
+  @Override
+  public boolean isValid() {
+    return this.valid;
   }
 
   @Override
@@ -5,7 +5,8 @@ import java.nio.file.StandardWatchEventKinds;
 
 final class ModificationWatchEvent extends PathWatchEvent {
 
-  private final int count;
+  // only incremented while the event is accumulated by its key
+  private int count;
 
 
   ModificationWatchEvent(Path path, int count) {
@@ -18,6 +19,10 @@ final class ModificationWatchEvent extends PathWatchEvent {
     return StandardWatchEventKinds.ENTRY_MODIFY;
   }
 
+  void increment() {
+    this.count += 1;
+  }
+
   @Override
   public int count() {
     return this.count;
@@ -57,7 +57,7 @@ final class MultipleNamedRootsPathParser extends PathParser {
   }
 
   @Override
-  PathMatcher parseGlob(String pattern) {
+  PathMatcher parseGlob(String pattern, int regexFlags) {
     if (this.startWithSeparator(pattern)) {
       // TODO build string
       throw new InvalidPathException(pattern, "path must not start with separator", 1);
@@ -69,9 +69,9 @@ final class MultipleNamedRootsPathParser extends PathParser {
 
     if (this.isAbsolute(elements)) {
       elements = elements.subList(1, elements.size());
-      return new GlobPathMatcher(true, convertToPatterns(elements));
+      return new GlobPathMatcher(true, convertToPatterns(elements, regexFlags));
     } else {
-      return new GlobPathMatcher(false, convertToPatterns(elements));
+      return new GlobPathMatcher(false, convertToPatterns(elements, regexFlags));
     }
   }
 
@@ -4,15 +4,16 @@ import static com.github.marschall.memoryfilesystem.MemoryFileSystemProvider.SCH
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.text.CollationKey;
 import java.text.Collator;
-import java.util.Arrays;
 
 class NamedRoot extends Root {
 
   private final char letter;
   private final String stringValue;
 
+  // lazily computed, roots are immutable so racy initialization is fine
+  private int hash;
+
   NamedRoot(MemoryFileSystem fileSystem, String name) {
     super(fileSystem);
     this.letter = name.charAt(0);
@@ -120,13 +121,15 @@ class NamedRoot extends Root {
 
   @Override
   public int hashCode() {
-    // TODO safe expensive
-    MemoryFileSystem memoryFileSystem = this.getMemoryFileSystem();
-    Collator collator = memoryFileSystem.getCollator();
-    int result = 17;
-    result = 31 * result + memoryFileSystem.hashCode();
-    CollationKey collationKey = collator.getCollationKey(Character.toString(this.letter));
-    return 31 * result + Arrays.hashCode(collationKey.toByteArray());
+    int result = this.hash;
+    if (result == 0) {
+      MemoryFileSystem memoryFileSystem = this.getMemoryFileSystem();
+      result = 17;
+      result = 31 * result + memoryFileSystem.hashCode();
+      result = 31 * result + memoryFileSystem.hashNameElement(Character.toString(this.letter));
+      this.hash = result;
+    }
+    return result;
   }
 
 }
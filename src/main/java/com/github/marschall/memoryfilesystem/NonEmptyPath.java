@@ -16,9 +16,97 @@ abstract class NonEmptyPath extends ElementPath {
 
   private final List<String> nameElements;
 
+  // lazily computed, paths are immutable so racy initialization is fine
+  private int hash;
+
+  // lazily built, racy initialization like hash
+  private String stringValue;
+
+  // lazily transformed name elements, may be shared with paths that have
+  // the same leading elements and may be longer than nameElements
+  private String[] lookUpKeys;
+
   NonEmptyPath(MemoryFileSystem fileSystem, List<String> nameElements) {
+    this(fileSystem, nameElements, null);
+  }
+
+  NonEmptyPath(MemoryFileSystem fileSystem, List<String> nameElements, String[] lookUpKeys) {
     super(fileSystem);
     this.nameElements = nameElements;
+    this.lookUpKeys = lookUpKeys;
+  }
+
+  @Override
+  String getLookUpKey(int index) {
+    MemoryFileSystem memoryFileSystem = this.getMemoryFileSystem();
+    String element = this.nameElements.get(index);
+    if (memoryFileSystem.isIdentityLookUp()) {
+      return element;
+    }
+    String[] keys = this.getLookUpKeys();
+    // racy, at worst the key is computed more than once
+    String key = keys[index];
+    if (key == null) {
+      key = memoryFileSystem.lookUpKey(element);
+      keys[index] = key;
+    }
+    return key;
+  }
+
+  /**
+   * Returns the look up keys of this path so that they can be shared with
+   * a path that has the same leading elements.
+   *
+   * @return the look up keys, {@code null} if name elements are not
+   *         transformed for look ups
+   */
+  String[] getSharedLookUpKeys() {
+    if (this.getMemoryFileSystem().isIdentityLookUp()) {
+      return null;
+    }
+    return this.getLookUpKeys();
+  }
+
+  private String[] getLookUpKeys() {
+    String[] keys = this.lookUpKeys;
+    if (keys == null) {
+      keys = new String[this.nameElements.size()];
+      this.lookUpKeys = keys;
+    }
+    return keys;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = this.hash;
+    if (result == 0) {
+      result = this.computeHashCode();
+      this.hash = result;
+    }
+    return result;
+  }
+
+  abstract int computeHashCode();
+
+  @Override
+  public String toString() {
+    String result = this.stringValue;
+    if (result == null) {
+      result = this.buildString();
+      this.stringValue = result;
+    }
+    return result;
+  }
+
+  abstract String buildString();
+
+  int hashNameElements(int seed) {
+    MemoryFileSystem memoryFileSystem = this.getMemoryFileSystem();
+    int result = seed;
+    for (String each : this.nameElements) {
+      result = 31 * result + memoryFileSystem.hashNameElement(each);
+    }
+    return result;
   }
 
   @Override
@@ -47,6 +135,9 @@ abstract class NonEmptyPath extends ElementPath {
       }
       String thisElement = this.nameElements.get(i);
       String otherElement = otherElements.get(i);
+      if (thisElement.equals(otherElement)) {
+        continue;
+      }
       int comparison = collator.compare(thisElement, otherElement);
       if (comparison != 0) {
         return comparison;
@@ -64,11 +155,16 @@ abstract class NonEmptyPath extends ElementPath {
     if (thisSize != otherElements.size()) {
       return false;
     }
-    Collator collator = this.getMemoryFileSystem().getCollator();
+    MemoryFileSystem memoryFileSystem = this.getMemoryFileSystem();
+    Collator collator = memoryFileSystem.getCollator();
+    boolean identityCollator = memoryFileSystem.isIdentityCollator();
     for (int i = 0; i < thisSize; i++) {
       String thisElement = this.nameElements.get(i);
       String otherElement = otherElements.get(i);
-      if (!collator.equals(thisElement, otherElement)) {
+      if (thisElement.equals(otherElement)) {
+        continue;
+      }
+      if (identityCollator || !collator.equals(thisElement, otherElement)) {
         return false;
       }
     }
@@ -5,7 +5,16 @@ import java.nio.file.WatchEvent;
 
 final class OverflowWatchEvent implements WatchEvent<Object> {
 
-  static final WatchEvent<?> INSTANCE = new OverflowWatchEvent();
+  // only incremented while the event is accumulated by its key
+  private int count;
+
+  OverflowWatchEvent() {
+    this.count = 1;
+  }
+
+  void increment() {
+    this.count += 1;
+  }
 
   @Override
   public Kind<Object> kind() {
@@ -14,7 +23,7 @@ final class OverflowWatchEvent implements WatchEvent<Object> {
 
   @Override
   public int count() {
-    return 1;
+    return this.count;
   }
 
   @Override
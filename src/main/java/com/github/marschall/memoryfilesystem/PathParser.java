@@ -1,7 +1,6 @@
 package com.github.marschall.memoryfilesystem;
 
-import static java.util.regex.Pattern.CASE_INSENSITIVE;
-import static java.util.regex.Pattern.UNICODE_CASE;
+import static java.util.regex.Pattern.DOTALL;
 
 import java.nio.file.InvalidPathException;
 import java.nio.file.PathMatcher;
@@ -69,7 +68,18 @@ abstract class PathParser {
   }
 
 
-  abstract PathMatcher parseGlob(String pattern);
+  abstract PathMatcher parseGlob(String pattern, int regexFlags);
+
+  /**
+   * Compiles a glob for {@link java.nio.file.FileSystem#getPathMatcher(String)}.
+   *
+   * @param glob the glob without the syntax
+   * @param regexFlags the flags of the regexes the glob is translated to
+   * @return the matcher
+   */
+  PathMatcher compileGlob(String glob, int regexFlags) {
+    return this.transpileGlob(glob, regexFlags);
+  }
 
   abstract boolean isAbsolute(String path);
 
@@ -157,15 +167,15 @@ abstract class PathParser {
     }
   }
 
-  static List<GlobPattern> convertToPatterns(List<String> elements) {
+  static List<GlobPattern> convertToPatterns(List<String> elements, int regexFlags) {
     List<GlobPattern> patterns = new ArrayList<>(elements.size());
     for (String element : elements) {
-      patterns.add(convertToPattern(element));
+      patterns.add(convertToPattern(element, regexFlags));
     }
     return patterns;
   }
 
-  private static GlobPattern convertToPattern(String element) {
+  private static GlobPattern convertToPattern(String element, int regexFlags) {
     if (element.equals("**")) {
       return DirectoryCrossingPattern.INSTANCE;
     }
@@ -173,8 +183,8 @@ abstract class PathParser {
     StringBuilder buffer = new StringBuilder();
 
     parseGeneric(stream, buffer, ExitHandler.EMPTY, element);
-    // TODO Pattern#CANON_EQ ?
-    Pattern pattern = Pattern.compile(buffer.toString(), CASE_INSENSITIVE | UNICODE_CASE);
+    // . has to match everything [^/] matches in a transpiled glob
+    Pattern pattern = Pattern.compile(buffer.toString(), regexFlags | DOTALL);
     return new RegexPattern(pattern);
   }
 
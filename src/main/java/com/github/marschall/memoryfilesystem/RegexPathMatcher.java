@@ -2,20 +2,206 @@ package com.github.marschall.memoryfilesystem;
 
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 abstract class RegexPathMatcher implements PathMatcher {
 
+  // flags that make literal characters in the regex match something else
+  private static final int NO_LITERALS_FLAGS = Pattern.CANON_EQ | Pattern.COMMENTS | Pattern.LITERAL;
+
   final Pattern pattern;
 
+  // every match starts with the prefix and ends with the suffix
+  private final String prefix;
+
+  private final String suffix;
+
+  private final boolean ignoreCase;
+
+  // created on first use, matchers only used for a directory stream
+  // never need it
+  private volatile ThreadLocal<Matcher> matchers;
+
   RegexPathMatcher(Pattern pattern) {
     this.pattern = pattern;
+    int flags = pattern.flags();
+    String regex = pattern.pattern();
+    if ((flags & NO_LITERALS_FLAGS) != 0 || regex.contains("(?")) {
+      this.prefix = "";
+      this.suffix = "";
+    } else {
+      List<String> literals = parseLiterals(regex);
+      this.prefix = literals.get(0);
+      this.suffix = literals.size() > 1 ? literals.get(literals.size() - 1) : "";
+    }
+    this.ignoreCase = (flags & Pattern.CASE_INSENSITIVE) != 0;
   }
 
   static String name() {
     return "regex";
   }
 
+  /**
+   * Matches a string against the pattern, checking the literal prefix and
+   * suffix of the pattern first.
+   */
+  boolean matches(String input) {
+    if (!this.matchesLiterals(input)) {
+      return false;
+    }
+    Matcher matcher = this.getMatcher();
+    matcher.reset(input);
+    boolean matches = matcher.matches();
+    // don't keep the input reachable
+    matcher.reset("");
+    return matches;
+  }
+
+  private Matcher getMatcher() {
+    ThreadLocal<Matcher> threadLocal = this.matchers;
+    if (threadLocal == null) {
+      // racing threads may create different instances, that only costs a
+      // matcher per thread
+      Pattern p = this.pattern;
+      threadLocal = ThreadLocal.withInitial(() -> p.matcher(""));
+      this.matchers = threadLocal;
+    }
+    return threadLocal.get();
+  }
+
+  /**
+   * Returns a filter for the names of a single directory stream. The filter
+   * has its own matcher so it must not be shared between threads.
+   *
+   * @return a filter for names that match the pattern
+   */
+  Predicate<String> newNameFilter() {
+    Matcher matcher = this.pattern.matcher("");
+    return name -> this.matchesLiterals(name) && matcher.reset(name).matches();
+  }
+
+  private boolean matchesLiterals(String input) {
+    int prefixLength = this.prefix.length();
+    int suffixLength = this.suffix.length();
+    if (input.length() < prefixLength + suffixLength) {
+      return false;
+    }
+    // String#regionMatches ignoring case accepts everything the regex accepts
+    return input.regionMatches(this.ignoreCase, 0, this.prefix, 0, prefixLength)
+            && input.regionMatches(this.ignoreCase, input.length() - suffixLength, this.suffix, 0, suffixLength);
+  }
+
+  String getLiteralPrefix() {
+    return this.prefix;
+  }
+
+  String getLiteralSuffix() {
+    return this.suffix;
+  }
+
+  private static boolean isLiteral(char c) {
+    return Character.isLetterOrDigit(c) || c == '/' || c == '_' || c == '-' || c == ':' || c == ' ' || c == ',';
+  }
+
+  /**
+   * Splits a regex into runs of literal characters.
+   *
+   * @param regex the regex to parse
+   * @return the literal run at the start followed by the literal run at
+   *         the end if there is one, the runs are empty if the regex does
+   *         not start or end with a literal or contains a top level
+   *         alternation
+   */
+  private static List<String> parseLiterals(String regex) {
+    List<String> runs = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    int length = regex.length();
+    int start = regex.startsWith("^") ? 1 : 0;
+    int depth = 0;
+    // whether the literals at the end can be trusted
+    boolean trailing = true;
+    for (int i = start; i < length; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\' && i + 1 < length && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+        // an escaped character like \. or \\ is literal
+        i += 1;
+        run.append(regex.charAt(i));
+      } else if (isLiteral(c)) {
+        run.append(c);
+      } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+        // the quantifier applies to the last character
+        if (run.length() > 0) {
+          run.setLength(run.length() - 1);
+        }
+        runs.add(run.toString());
+        run.setLength(0);
+        if (c == '{') {
+          int end = regex.indexOf('}', i);
+          i = end == -1 ? length : end;
+        }
+      } else {
+        if (c == '\\' && i + 1 < length && regex.charAt(i + 1) == 'Q') {
+          // quoted characters would need their own parser
+          return Arrays.asList("", "");
+        } else if (c == '\\') {
+          // an escape sequence like \d or \x41, the characters that follow
+          // may belong to it
+          trailing = false;
+          i += 1;
+        } else if (c == '[') {
+          i = characterClassEnd(regex, i);
+        } else if (c == '(') {
+          depth += 1;
+        } else if (c == ')') {
+          depth -= 1;
+        } else if (c == '|' && depth == 0) {
+          return Arrays.asList("", "");
+        } else if (c == '$' && i == length - 1) {
+          break;
+        }
+        runs.add(run.toString());
+        run.setLength(0);
+      }
+    }
+    runs.add(run.toString());
+    if (!trailing) {
+      runs.add("");
+    }
+    return runs;
+  }
+
+  private static int characterClassEnd(String regex, int start) {
+    int length = regex.length();
+    int i = start + 1;
+    if (i < length && regex.charAt(i) == '^') {
+      i += 1;
+    }
+    if (i < length && regex.charAt(i) == ']') {
+      // a leading ] is literal
+      i += 1;
+    }
+    int depth = 1;
+    for (; i < length; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 1;
+      } else if (c == '[') {
+        depth += 1;
+      } else if (c == ']') {
+        depth -= 1;
+        if (depth == 0) {
+          return i;
+        }
+      }
+    }
+    return length;
+  }
+
 }
 
 final class RegexAbsolutePathMatcher extends RegexPathMatcher {
@@ -27,7 +213,7 @@ final class RegexAbsolutePathMatcher extends RegexPathMatcher {
   @Override
   public boolean matches(Path path) {
     MemoryFileSystemProvider.castPath(path);
-    return this.pattern.matcher(path.toAbsolutePath().toString()).matches();
+    return this.matches(path.toAbsolutePath().toString());
   }
 
 }
@@ -45,7 +231,7 @@ final class RegexRelativePathMatcher extends RegexPathMatcher {
       AbstractPath defaultPath = abstractPath.getMemoryFileSystem().getDefaultPath();
       path = defaultPath.relativize(path);
     }
-    return this.pattern.matcher(path.toString()).matches();
+    return this.matches(path.toString());
   }
 
 }
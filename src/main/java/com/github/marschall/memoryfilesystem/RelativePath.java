@@ -2,10 +2,8 @@ package com.github.marschall.memoryfilesystem;
 
 import java.net.URI;
 import java.nio.file.Path;
-import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 final class RelativePath extends NonEmptyPath {
@@ -21,7 +19,7 @@ final class RelativePath extends NonEmptyPath {
   }
 
   @Override
-  public String toString() {
+  String buildString() {
     // TODO estimate size
     StringBuilder buffer = new StringBuilder();
     String separator = this.getFileSystem().getSeparator();
@@ -204,18 +202,10 @@ final class RelativePath extends NonEmptyPath {
   }
 
   @Override
-  public int hashCode() {
-    MemoryFileSystem memoryFileSystem = this.getMemoryFileSystem();
-    Collator collator = memoryFileSystem.getCollator();
-
+  int computeHashCode() {
     int result = 17;
-    result = 31 * result + memoryFileSystem.hashCode();
-    for (String each : this.getNameElements()) {
-      // TODO expensive, safe
-      CollationKey collationKey = collator.getCollationKey(each);
-      result = 31 * result + Arrays.hashCode(collationKey.toByteArray());
-    }
-    return result;
+    result = 31 * result + this.getMemoryFileSystem().hashCode();
+    return this.hashNameElements(result);
   }
 
   @Override
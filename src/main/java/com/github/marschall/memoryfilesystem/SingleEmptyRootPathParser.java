@@ -38,10 +38,10 @@ final class SingleEmptyRootPathParser extends PathParser {
   }
 
   @Override
-  PathMatcher parseGlob(String pattern) {
+  PathMatcher parseGlob(String pattern, int regexFlags) {
     List<String> elements = new ArrayList<>(count(pattern));
     this.parseInto(pattern, elements);
-    List<GlobPattern> matches = convertToPatterns(elements);
+    List<GlobPattern> matches = convertToPatterns(elements, regexFlags);
     if (this.startWithSeparator(pattern)) {
       return new GlobPathMatcher(true, matches);
     } else {
@@ -49,6 +49,46 @@ final class SingleEmptyRootPathParser extends PathParser {
     }
   }
 
+  @Override
+  PathMatcher compileGlob(String glob, int regexFlags) {
+    if (this.separator == '/' && isElementGlob(glob)) {
+      return this.parseGlob(glob, regexFlags);
+    }
+    return this.transpileGlob(glob, regexFlags);
+  }
+
+  /**
+   * Checks whether a glob is matched the same way by a
+   * {@link GlobPathMatcher} as by the regex it is transpiled to.
+   */
+  private static boolean isElementGlob(String glob) {
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      // groups, ranges and escaped characters may contain separators
+      if (c == '{' || c == '[' || c == '\\') {
+        return false;
+      }
+    }
+    String[] elements = glob.split("/", -1);
+    int start = glob.startsWith("/") ? 1 : 0;
+    if (start == elements.length) {
+      return false;
+    }
+    for (int i = start; i < elements.length; i++) {
+      String element = elements[i];
+      if (element.isEmpty()) {
+        // a path never contains an empty element
+        return false;
+      }
+      if (!element.equals("**") && element.contains("**")) {
+        // the regex matches across directories
+        return false;
+      }
+    }
+    // GlobPathMatcher also matches the parent
+    return !elements[elements.length - 1].equals("**");
+  }
+
   @Override
   boolean isAbsolute(String path) {
     return this.startWithSeparator(path);
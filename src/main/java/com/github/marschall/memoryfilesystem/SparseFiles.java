@@ -0,0 +1,66 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Queries the allocated regions of sparse files, much like
+ * {@code lseek} with {@code SEEK_DATA} and {@code SEEK_HOLE}.
+ *
+ * <p>Blocks are only allocated when they are written, so a file that is
+ * written at a large position without writing the region before it only
+ * uses memory for the bytes actually written. The unwritten region is a
+ * hole and reads as zeros.</p>
+ *
+ * <p>Holes are tracked per block so a region reported as data may contain
+ * zeros that have never been written.</p>
+ */
+public final class SparseFiles {
+
+  private SparseFiles() {
+    throw new AssertionError("not instantiable");
+  }
+
+  /**
+   * Returns the start of the next region that contains data.
+   *
+   * @param channel a channel opened from a memory file system
+   * @param position the position from which to start searching
+   * @return {@code position} if it is in data, otherwise the start of the
+   *         next region containing data, {@code -1} if there is no data
+   *         at or after {@code position}
+   * @throws IllegalArgumentException if {@code channel} is not from a memory
+   *         file system or {@code position} is negative
+   * @throws java.nio.channels.ClosedChannelException if {@code channel} is closed
+   * @throws IOException if an I/O error occurs
+   */
+  public static long nextData(FileChannel channel, long position) throws IOException {
+    return blockChannel(channel).nextData(position);
+  }
+
+  /**
+   * Returns the start of the next hole. The end of the file is treated
+   * as a hole.
+   *
+   * @param channel a channel opened from a memory file system
+   * @param position the position from which to start searching
+   * @return {@code position} if it is in a hole, otherwise the start of the
+   *         next hole, {@code -1} if {@code position} is at or past the end
+   *         of the file
+   * @throws IllegalArgumentException if {@code channel} is not from a memory
+   *         file system or {@code position} is negative
+   * @throws java.nio.channels.ClosedChannelException if {@code channel} is closed
+   * @throws IOException if an I/O error occurs
+   */
+  public static long nextHole(FileChannel channel, long position) throws IOException {
+    return blockChannel(channel).nextHole(position);
+  }
+
+  private static BlockChannel blockChannel(FileChannel channel) {
+    if (!(channel instanceof BlockChannel)) {
+      throw new IllegalArgumentException("channel is not a file channel of a memory file system");
+    }
+    return (BlockChannel) channel;
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.github.marschall.memoryfilesystem.AsynchronousFileChannelTest.Reader;
+
+/**
+ * Measures {@link AsynchronousBlockChannel}.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=AsynchronousFileChannelBenchmark}.</p>
+ */
+@Tag("benchmark")
+class AsynchronousFileChannelBenchmark {
+
+  /**
+   * Measures the throughput of 64 concurrent readers, each issuing the next
+   * read from the completion handler of the previous one.
+   */
+  @Test
+  void concurrentReaders() throws IOException, InterruptedException {
+    int processors = Runtime.getRuntime().availableProcessors();
+    this.concurrentReaders("single thread", Executors.newSingleThreadExecutor());
+    this.concurrentReaders("default", null);
+    this.concurrentReaders(processors + " threads", Executors.newFixedThreadPool(processors));
+    this.concurrentReaders("fork join pool", new ForkJoinPool(processors));
+  }
+
+  private void concurrentReaders(String name, ExecutorService executor) throws IOException, InterruptedException {
+    MemoryFileSystemBuilder builder = MemoryFileSystemBuilder.newEmpty();
+    if (executor != null) {
+      builder.setAsynchronousExecutor(executor);
+    }
+    int readers = 64;
+    int reads = 20_000;
+    try (FileSystem fileSystem = builder.build()) {
+      Path path = Files.write(fileSystem.getPath("/file"), new byte[8192]);
+      try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ)) {
+        long duration = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+          CountDownLatch latch = new CountDownLatch(readers);
+          long start = System.nanoTime();
+          for (int i = 0; i < readers; i++) {
+            new Reader(channel, reads, latch).read();
+          }
+          assertTrue(latch.await(1L, TimeUnit.MINUTES));
+          duration = Math.min(duration, System.nanoTime() - start);
+        }
+        System.out.printf("%-16s %,d reads/s%n", name, readers * reads * TimeUnit.SECONDS.toNanos(1L) / duration);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Measures the latency of asynchronous reads with and without
+   * synchronous completion.
+   */
+  @Test
+  void readLatency() throws IOException, InterruptedException, ExecutionException {
+    for (boolean synchronousCompletion : new boolean[] {false, true}) {
+      try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setSynchronousCompletion(synchronousCompletion).build()) {
+        Path path = Files.write(fileSystem.getPath("/file"), new byte[8192]);
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ)) {
+          ByteBuffer buffer = ByteBuffer.allocate(512);
+          int iterations = 100_000;
+          long futureDuration = Long.MAX_VALUE;
+          long handlerDuration = Long.MAX_VALUE;
+          for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+              buffer.clear();
+              channel.read(buffer, 0L).get();
+            }
+            futureDuration = Math.min(futureDuration, System.nanoTime() - start);
+
+            CountDownLatch latch = new CountDownLatch(1);
+            start = System.nanoTime();
+            new Reader(channel, iterations, latch).read();
+            assertTrue(latch.await(1L, TimeUnit.MINUTES));
+            handlerDuration = Math.min(handlerDuration, System.nanoTime() - start);
+          }
+          System.out.printf("%-24s future: %,d ns/op, completion handler: %,d ns/op%n",
+                  synchronousCompletion ? "synchronous completion" : "default",
+                  futureDuration / iterations, handlerDuration / iterations);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class AsynchronousFileChannelTest {
+
+  @Test
+  void fileSystemExecutor() throws IOException, InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "file-system-executor"));
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setAsynchronousExecutor(executor).build()) {
+      Path path = Files.write(fileSystem.getPath("/file"), new byte[]{1, 2, 3});
+      try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ)) {
+        ByteBuffer buffer = ByteBuffer.allocate(3);
+        assertEquals(3, channel.read(buffer, 0L).get().intValue());
+        assertArrayEquals(new byte[]{1, 2, 3}, buffer.array());
+
+        AtomicReference<String> threadName = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        channel.read(ByteBuffer.allocate(3), 0L, null, new CompletionHandler<Integer, Object>() {
+
+          @Override
+          public void completed(Integer result, Object attachment) {
+            threadName.set(Thread.currentThread().getName());
+            latch.countDown();
+          }
+
+          @Override
+          public void failed(Throwable exc, Object attachment) {
+            latch.countDown();
+          }
+        });
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        assertEquals("file-system-executor", threadName.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    // the executor is owned by the caller
+    assertTrue(executor.awaitTermination(10L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void explicitExecutor() throws IOException, InterruptedException, ExecutionException {
+    ExecutorService fileSystemExecutor = Executors.newSingleThreadExecutor();
+    ExecutorService channelExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "channel-executor"));
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setAsynchronousExecutor(fileSystemExecutor).build()) {
+      Path path = Files.write(fileSystem.getPath("/file"), new byte[]{1});
+      try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, Collections.singleton(READ), channelExecutor)) {
+        AtomicReference<String> threadName = new AtomicReference<>();
+        channel.read(ByteBuffer.allocate(1), 0L).get();
+        channelExecutor.submit(() -> threadName.set(Thread.currentThread().getName())).get();
+        assertEquals("channel-executor", threadName.get());
+      }
+    } finally {
+      fileSystemExecutor.shutdown();
+      channelExecutor.shutdown();
+    }
+  }
+
+  @Test
+  void synchronousCompletion() throws IOException, InterruptedException, ExecutionException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setSynchronousCompletion(true).build()) {
+      Path path = Files.write(fileSystem.getPath("/file"), new byte[]{1, 2, 3});
+      try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ, WRITE)) {
+        Future<Integer> future = channel.write(ByteBuffer.wrap(new byte[]{4}), 3L);
+        assertTrue(future.isDone());
+        assertEquals(1, future.get().intValue());
+
+        Thread caller = Thread.currentThread();
+        AtomicReference<Thread> completer = new AtomicReference<>();
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer, 0L, null, new CompletionHandler<Integer, Object>() {
+
+          @Override
+          public void completed(Integer result, Object attachment) {
+            completer.set(Thread.currentThread());
+          }
+
+          @Override
+          public void failed(Throwable exc, Object attachment) {
+            throw new AssertionError("read failed", exc);
+          }
+        });
+        assertSame(caller, completer.get());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, buffer.array());
+      }
+    }
+  }
+
+  @Test
+  void synchronousCompletionFailure() throws IOException, InterruptedException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setSynchronousCompletion(true).build()) {
+      Path path = Files.write(fileSystem.getPath("/file"), new byte[]{1});
+      try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ)) {
+        Future<Integer> future = channel.write(ByteBuffer.wrap(new byte[]{2}), 0L);
+        assertTrue(future.isDone());
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertThat(exception.getCause(), instanceOf(NonWritableChannelException.class));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        channel.write(ByteBuffer.wrap(new byte[]{2}), 0L, null, new CompletionHandler<Integer, Object>() {
+
+          @Override
+          public void completed(Integer result, Object attachment) {
+            throw new AssertionError("write should fail");
+          }
+
+          @Override
+          public void failed(Throwable exc, Object attachment) {
+            failure.set(exc);
+          }
+        });
+        assertThat(failure.get(), instanceOf(NonWritableChannelException.class));
+      }
+    }
+  }
+
+  @Test
+  void synchronousCompletionNested() throws IOException, InterruptedException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setSynchronousCompletion(true).build()) {
+      Path path = Files.write(fileSystem.getPath("/file"), new byte[8192]);
+      try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, READ)) {
+        // handlers issuing the next read must not overflow the stack
+        CountDownLatch latch = new CountDownLatch(1);
+        new Reader(channel, 1_000_000, latch).read();
+        assertTrue(latch.await(1L, TimeUnit.MINUTES));
+      }
+    }
+  }
+
+  static final class Reader implements CompletionHandler<Integer, Object> {
+
+    private final AsynchronousFileChannel channel;
+    private final AtomicInteger remaining;
+    private final CountDownLatch latch;
+    private final ByteBuffer buffer;
+
+    Reader(AsynchronousFileChannel channel, int reads, CountDownLatch latch) {
+      this.channel = channel;
+      this.remaining = new AtomicInteger(reads);
+      this.latch = latch;
+      this.buffer = ByteBuffer.allocate(512);
+    }
+
+    void read() {
+      this.buffer.clear();
+      this.channel.read(this.buffer, 0L, null, this);
+    }
+
+    @Override
+    public void completed(Integer result, Object attachment) {
+      if (this.remaining.decrementAndGet() > 0) {
+        this.read();
+      } else {
+        this.latch.countDown();
+      }
+    }
+
+    @Override
+    public void failed(Throwable exc, Object attachment) {
+      this.latch.countDown();
+    }
+
+  }
+
+}
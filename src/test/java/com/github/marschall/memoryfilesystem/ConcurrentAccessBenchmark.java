@@ -0,0 +1,196 @@
+package com.github.marschall.memoryfilesystem;
+
+import static com.github.marschall.memoryfilesystem.ConcurrentAccessTest.runAll;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures concurrent access to a file system.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=ConcurrentAccessBenchmark}.</p>
+ */
+@Tag("benchmark")
+class ConcurrentAccessBenchmark {
+
+  /**
+   * Measures random positional reads from a single file with an increasing
+   * number of threads.
+   */
+  @Test
+  void randomReadThroughput() throws IOException, InterruptedException, ExecutionException {
+    long size = 64L * 1024L * 1024L;
+    int readSize = 4096;
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+      Path path = fileSystem.getPath("hot");
+      try (FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+        while (channel.size() < size) {
+          buffer.clear();
+          channel.write(buffer);
+        }
+      }
+
+      try (FileChannel channel = FileChannel.open(path, READ)) {
+        int maxThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+          List<Callable<Long>> tasks = new ArrayList<>();
+          for (int i = 0; i < threads; i++) {
+            tasks.add(() -> {
+              ByteBuffer buffer = ByteBuffer.allocate(readSize);
+              ThreadLocalRandom random = ThreadLocalRandom.current();
+              long reads = 0L;
+              long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+              while (System.nanoTime() < end) {
+                buffer.clear();
+                channel.read(buffer, random.nextLong(size - readSize));
+                reads += 1L;
+              }
+              return reads;
+            });
+          }
+          long reads = 0L;
+          for (long threadReads : runAll(tasks)) {
+            reads += threadReads;
+          }
+          System.out.printf("%2d threads: %,d reads/s%n", threads, reads);
+        }
+      }
+    }
+  }
+
+  /**
+   * Measures positional overwrites of different threads to different
+   * regions of a single file.
+   */
+  @Test
+  void parallelWriteThroughput() throws IOException, InterruptedException, ExecutionException {
+    long regionSize = 64L * 1024L * 1024L;
+    int writeSize = 64 * 1024;
+    int maxThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+        Path path = fileSystem.getPath("parallel");
+        try (FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE)) {
+          List<Callable<Long>> tasks = new ArrayList<>();
+          for (int i = 0; i < threads; i++) {
+            long start = i * regionSize;
+            tasks.add(() -> {
+              ByteBuffer buffer = ByteBuffer.allocate(writeSize);
+              for (long position = start; position < start + regionSize; position += writeSize) {
+                buffer.clear();
+                channel.write(buffer, position);
+              }
+              return regionSize;
+            });
+          }
+          // the first pass allocates the blocks, the second one overwrites them
+          runAll(tasks);
+          long startTime = System.nanoTime();
+          runAll(tasks);
+          long duration = System.nanoTime() - startTime;
+          System.out.printf("%2d threads: %,d MB/s%n", threads,
+                  threads * regionSize * 1000L / Math.max(TimeUnit.NANOSECONDS.toMillis(duration), 1L) / (1024L * 1024L));
+        }
+      }
+    }
+  }
+
+  /**
+   * Measures concurrent look ups of a file in a deep directory tree.
+   */
+  @Test
+  void lookUpThroughput() throws IOException, InterruptedException, ExecutionException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+      Path file = fileSystem.getPath("/a/b/c/d/e/f/file");
+      Files.createDirectories(file.getParent());
+      Files.createFile(file);
+
+      int maxThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
+      for (int threads = 1; threads <= maxThreads; threads *= 2) {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          tasks.add(() -> {
+            long lookUps = 0L;
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+            while (System.nanoTime() < end) {
+              Files.readAttributes(file, BasicFileAttributes.class);
+              lookUps += 1L;
+            }
+            return lookUps;
+          });
+        }
+        long lookUps = 0L;
+        for (long threadLookUps : runAll(tasks)) {
+          lookUps += threadLookUps;
+        }
+        System.out.printf("%2d threads: %,d look ups/s%n", threads, lookUps);
+      }
+    }
+  }
+
+  /**
+   * Measures the rate at which threads create and delete files in a single
+   * directory while other threads look up files in it.
+   */
+  @Test
+  void createThroughput() throws IOException, InterruptedException, ExecutionException {
+    int maxThreads = Math.max(Runtime.getRuntime().availableProcessors() * 2, 4);
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+        Path directory = Files.createDirectory(fileSystem.getPath("/hot"));
+        for (int i = 0; i < 100_000; i++) {
+          Files.createFile(directory.resolve("existing" + i));
+        }
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          int thread = i;
+          tasks.add(() -> {
+            long creates = 0L;
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+            while (System.nanoTime() < end) {
+              Path file = directory.resolve(thread + "-" + creates);
+              Files.createFile(file);
+              if (creates % 2L == 1L) {
+                Files.delete(file);
+              }
+              creates += 1L;
+            }
+            return creates;
+          });
+          tasks.add(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1L);
+            while (System.nanoTime() < end) {
+              Files.exists(directory.resolve("existing" + random.nextInt(100_000)));
+            }
+            return 0L;
+          });
+        }
+        long creates = 0L;
+        for (long threadCreates : runAll(tasks)) {
+          creates += threadCreates;
+        }
+        System.out.printf("%2d threads: %,d creates/s%n", threads, creates);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,275 @@
+package com.github.marschall.memoryfilesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ConcurrentAccessTest {
+
+  private static final long DURATION = TimeUnit.MILLISECONDS.toNanos(200L);
+
+  @Test
+  void readsSeeWholeWrites() throws InterruptedException, ExecutionException {
+    assertReadsSeeWholeWrites(BlockAllocator.HEAP, MemoryInode.BLOCK_SIZE * 3);
+  }
+
+  @Test
+  void optimisticReadsSeeWholeWrites() throws InterruptedException, ExecutionException {
+    assertReadsSeeWholeWrites(BlockAllocator.HEAP, MemoryInode.BLOCK_SIZE * 2);
+    assertReadsSeeWholeWrites(BlockAllocator.DIRECT, MemoryInode.BLOCK_SIZE * 2);
+  }
+
+  @Test
+  void readsLeaveDestinationPastResult() throws InterruptedException, ExecutionException {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    int size = MemoryInode.BLOCK_SIZE + 1;
+    byte[] contents = new byte[size];
+    Arrays.fill(contents, (byte) 1);
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    tasks.add(() -> {
+      long end = System.nanoTime() + DURATION;
+      while (System.nanoTime() < end) {
+        inode.truncate(0L);
+        inode.write(contents, 0L, 0, size);
+      }
+      return null;
+    });
+    tasks.add(() -> {
+      byte[] destination = new byte[size];
+      long end = System.nanoTime() + DURATION;
+      while (System.nanoTime() < end) {
+        Arrays.fill(destination, (byte) 2);
+        int read = Math.max(inode.read(destination, 0L, 0, size), 0);
+        for (int i = read; i < size; i++) {
+          if (destination[i] != 2) {
+            fail("overwrote destination at " + i + " after reading " + read + " bytes");
+          }
+        }
+      }
+      return null;
+    });
+
+    runAll(tasks);
+  }
+
+  private static void assertReadsSeeWholeWrites(BlockAllocator allocator, int size) throws InterruptedException, ExecutionException {
+    MemoryInode inode = new MemoryInode(allocator, 0);
+    inode.write(new byte[size], 0L, 0, size);
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    tasks.add(() -> {
+      byte[] contents = new byte[size];
+      long end = System.nanoTime() + DURATION;
+      for (byte value = 0; System.nanoTime() < end; ++value) {
+        Arrays.fill(contents, value);
+        inode.write(contents, 0L, 0, size);
+      }
+      return null;
+    });
+    tasks.add(() -> {
+      byte[] contents = new byte[size];
+      long end = System.nanoTime() + DURATION;
+      while (System.nanoTime() < end) {
+        assertEquals(size, inode.read(contents, 0L, 0, size));
+        assertUniform(contents);
+      }
+      return null;
+    });
+    tasks.add(() -> {
+      ByteBuffer buffer = ByteBuffer.allocate(size);
+      long end = System.nanoTime() + DURATION;
+      while (System.nanoTime() < end) {
+        buffer.clear();
+        assertEquals(size, inode.read(buffer, 0L, Long.MAX_VALUE));
+        assertUniform(buffer.array());
+      }
+      return null;
+    });
+
+    runAll(tasks);
+  }
+
+  @Test
+  void parallelWritesToDifferentBlocks() throws InterruptedException, ExecutionException {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    int writers = 4;
+    int regionSize = MemoryInode.BLOCK_SIZE * 3 + 7;
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < writers; i++) {
+      byte value = (byte) (i + 1);
+      long position = (long) i * regionSize;
+      tasks.add(() -> {
+        byte[] contents = new byte[regionSize];
+        Arrays.fill(contents, value);
+        // write in pieces so that writers interleave
+        for (int offset = 0; offset < regionSize; offset += 1000) {
+          int length = Math.min(1000, regionSize - offset);
+          assertEquals(length, inode.write(contents, position + offset, offset, length));
+        }
+        return null;
+      });
+    }
+    runAll(tasks);
+
+    assertEquals((long) writers * regionSize, inode.size());
+    byte[] contents = new byte[regionSize];
+    for (int i = 0; i < writers; i++) {
+      assertEquals(regionSize, inode.read(contents, (long) i * regionSize, 0, regionSize));
+      for (byte each : contents) {
+        assertEquals((byte) (i + 1), each);
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1024})
+  void lookUpsDuringConcurrentChanges(int lookUpCacheSize) throws IOException, InterruptedException, ExecutionException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(lookUpCacheSize).build()) {
+      Path stable = Files.createDirectories(fileSystem.getPath("/top/sub/stable"));
+      Path moving = Files.createDirectories(fileSystem.getPath("/top/moving/child"));
+      Path moved = fileSystem.getPath("/top/moved");
+
+      List<Callable<Void>> tasks = new ArrayList<>();
+      tasks.add(() -> {
+        // changes the directories the readers traverse
+        long end = System.nanoTime() + DURATION;
+        for (int i = 0; System.nanoTime() < end; i++) {
+          Path sibling = stable.resolveSibling("sibling" + i);
+          Files.createFile(sibling);
+          Files.delete(sibling);
+          Files.move(moving.getParent(), moved);
+          Files.move(moved, moving.getParent());
+        }
+        return null;
+      });
+      tasks.add(() -> {
+        long end = System.nanoTime() + DURATION;
+        while (System.nanoTime() < end) {
+          assertTrue(Files.isDirectory(stable));
+          // either may be missing but the look up must not fail
+          Files.exists(moving);
+          Files.exists(moved.resolve("child"));
+        }
+        return null;
+      });
+      tasks.add(() -> {
+        // creates files in a directory whose parent changes
+        long end = System.nanoTime() + DURATION;
+        for (int i = 0; System.nanoTime() < end; i++) {
+          Files.createFile(stable.resolve("file" + i));
+        }
+        return null;
+      });
+      runAll(tasks);
+
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(stable)) {
+        int i = 0;
+        for (Path each : stream) {
+          assertTrue(Files.isRegularFile(each));
+          i++;
+        }
+        assertTrue(Files.exists(stable.resolve("file" + (i - 1))));
+        assertFalse(Files.exists(stable.resolve("file" + i)));
+      }
+    }
+  }
+
+  @Test
+  void createAndDeleteInSameDirectory() throws IOException, InterruptedException, ExecutionException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+      Path directory = Files.createDirectory(fileSystem.getPath("/hot"));
+      int threads = 4;
+      int files = 1000;
+
+      List<Callable<int[]>> tasks = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        int thread = i;
+        tasks.add(() -> {
+          int[] createdAndDeleted = new int[2];
+          for (int j = 0; j < files; j++) {
+            Files.createFile(directory.resolve(thread + "-" + j));
+            // every thread creates and deletes the same directories,
+            // files can't be deleted while they are being created
+            Path shared = directory.resolve("shared-" + (j % 10));
+            try {
+              Files.createDirectory(shared);
+              createdAndDeleted[0] += 1;
+            } catch (FileAlreadyExistsException e) {
+              // created by an other thread
+            }
+            if (Files.deleteIfExists(shared)) {
+              createdAndDeleted[1] += 1;
+            }
+          }
+          return createdAndDeleted;
+        });
+      }
+      int created = 0;
+      int deleted = 0;
+      for (int[] createdAndDeleted : runAll(tasks)) {
+        created += createdAndDeleted[0];
+        deleted += createdAndDeleted[1];
+      }
+
+      for (int i = 0; i < threads; i++) {
+        for (int j = 0; j < files; j++) {
+          assertTrue(Files.exists(directory.resolve(i + "-" + j)));
+        }
+      }
+      int remaining = 0;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "shared-*")) {
+        for (Path each : stream) {
+          remaining += 1;
+        }
+      }
+      // every directory is deleted at most once
+      assertEquals(created, deleted + remaining);
+    }
+  }
+
+  static <T> List<T> runAll(List<Callable<T>> tasks) throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    try {
+      List<T> results = new ArrayList<>(tasks.size());
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertUniform(byte[] contents) {
+    for (int i = 1; i < contents.length; i++) {
+      if (contents[i] != contents[0]) {
+        fail("read partial write at " + i);
+      }
+    }
+  }
+
+}
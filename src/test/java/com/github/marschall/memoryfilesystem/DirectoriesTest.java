@@ -11,10 +11,13 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
@@ -63,6 +66,60 @@ class DirectoriesTest {
     }
   }
 
+  @Test
+  void newDirectoryStreamGlob() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build("glob")) {
+      Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+      for (String name : asList("a.log", "b.log", "c.txt", "d.java", "log", "sub.log.gz")) {
+        Files.createFile(directory.resolve(name));
+      }
+
+      for (String glob : asList("*.log", "*.{log,txt}", "?.*", "*", "log", "[ab].log", "*.log*")) {
+        assertThat(glob, listNames(Directories.newDirectoryStream(directory, glob)),
+                equalTo(listNames(Files.newDirectoryStream(directory, glob))));
+      }
+      assertThat(listNames(Directories.newDirectoryStream(directory, "*.log")), equalTo(new HashSet<>(asList("a.log", "b.log"))));
+    }
+  }
+
+  @Test
+  void newDirectoryStreamGlobCaseInsensitive() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newWindows().build("glob")) {
+      Path directory = Files.createDirectory(fileSystem.getPath("C:\\directory"));
+      Files.createFile(directory.resolve("A.LOG"));
+      Files.createFile(directory.resolve("b.log"));
+      Files.createFile(directory.resolve("c.txt"));
+
+      assertThat(listNames(Directories.newDirectoryStream(directory, "*.log")),
+              equalTo(listNames(Files.newDirectoryStream(directory, "*.log"))));
+    }
+  }
+
+  @Test
+  void newDirectoryStreamGlobDefaultFileSystem() throws IOException {
+    Path directory = Files.createTempDirectory("glob");
+    try {
+      Path file = Files.createFile(directory.resolve("a.log"));
+      try {
+        assertThat(listNames(Directories.newDirectoryStream(directory, "*.log")), equalTo(new HashSet<>(asList("a.log"))));
+      } finally {
+        Files.delete(file);
+      }
+    } finally {
+      Files.delete(directory);
+    }
+  }
+
+  private static Set<String> listNames(DirectoryStream<Path> stream) throws IOException {
+    Set<String> names = new HashSet<>();
+    try (DirectoryStream<Path> closeable = stream) {
+      for (Path each : closeable) {
+        names.add(each.getFileName().toString());
+      }
+    }
+    return names;
+  }
+
   private static byte[] readAttribute(String name, UserDefinedFileAttributeView attributeView) throws IOException {
     byte[] data = new byte[attributeView.size(name)];
     ByteBuffer buffer = ByteBuffer.wrap(data);
@@ -39,6 +39,26 @@ final class EntryCreationContextUtil {
       return instant;
     }
 
+    @Override
+    public BlockAllocator getBlockAllocator() {
+      return BlockAllocator.HEAP;
+    }
+
+    @Override
+    public void watchKeyAdded() {
+      // not watched
+    }
+
+    @Override
+    public void watchKeysRemoved(int count) {
+      // not watched
+    }
+
+    @Override
+    public boolean isWatched() {
+      return false;
+    }
+
   }
 
 }
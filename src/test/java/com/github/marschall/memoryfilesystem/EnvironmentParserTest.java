@@ -1,9 +1,16 @@
 package com.github.marschall.memoryfilesystem;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.jupiter.api.Test;
 
@@ -37,6 +44,81 @@ class EnvironmentParserTest {
     assertEquals("\\", parser.getSeparator());
   }
 
+  @Test
+  void offHeap() {
+    assertEquals(BlockAllocator.HEAP, this.parse(MemoryFileSystemBuilder.newEmpty()).getBlockAllocator());
+    EnvironmentParser parser = this.parse(MemoryFileSystemBuilder.newEmpty().setStoreFileContentsOffHeap(true));
+    assertEquals(BlockAllocator.DIRECT, parser.getBlockAllocator());
+  }
+
+  @Test
+  void blockSize() {
+    EnvironmentParser parser = this.parse(MemoryFileSystemBuilder.newEmpty().setBlockSize(64 * 1024));
+    assertEquals(new BlockAllocator(false, 64 * 1024), parser.getBlockAllocator());
+    parser = this.parse(MemoryFileSystemBuilder.newEmpty().setBlockSize(64 * 1024).setStoreFileContentsOffHeap(true));
+    assertEquals(new BlockAllocator(true, 64 * 1024), parser.getBlockAllocator());
+  }
+
+  @Test
+  void invalidBlockSize() {
+    assertThrows(IllegalArgumentException.class, () -> MemoryFileSystemBuilder.newEmpty().setBlockSize(0));
+    assertThrows(IllegalArgumentException.class, () -> MemoryFileSystemBuilder.newEmpty().setBlockSize(BlockAllocator.MAX_BLOCK_SIZE + 1));
+    EnvironmentParser parser = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.BLOCK_SIZE_PROPERTY, "1024"));
+    assertThrows(IllegalArgumentException.class, parser::getBlockAllocator);
+    EnvironmentParser negative = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.BLOCK_SIZE_PROPERTY, -1));
+    assertThrows(IllegalArgumentException.class, negative::getBlockAllocator);
+  }
+
+  @Test
+  void lookUpCacheSize() {
+    assertFalse(this.parse(MemoryFileSystemBuilder.newEmpty()).getLookUpCache().isEnabled());
+    assertTrue(this.parse(MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16)).getLookUpCache().isEnabled());
+  }
+
+  @Test
+  void invalidLookUpCacheSize() {
+    assertThrows(IllegalArgumentException.class, () -> MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(-1));
+    EnvironmentParser parser = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.LOOK_UP_CACHE_SIZE_PROPERTY, "16"));
+    assertThrows(IllegalArgumentException.class, parser::getLookUpCache);
+    EnvironmentParser negative = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.LOOK_UP_CACHE_SIZE_PROPERTY, -1));
+    assertThrows(IllegalArgumentException.class, negative::getLookUpCache);
+  }
+
+  @Test
+  void watchEventCapacity() {
+    assertEquals(MemoryWatchKey.DEFAULT_EVENT_CAPACITY, this.parse(MemoryFileSystemBuilder.newEmpty()).getWatchEventCapacity());
+    assertEquals(16, this.parse(MemoryFileSystemBuilder.newEmpty().setWatchEventCapacity(16)).getWatchEventCapacity());
+  }
+
+  @Test
+  void invalidWatchEventCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> MemoryFileSystemBuilder.newEmpty().setWatchEventCapacity(0));
+    EnvironmentParser parser = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.WATCH_EVENT_CAPACITY_PROPERTY, "16"));
+    assertThrows(IllegalArgumentException.class, parser::getWatchEventCapacity);
+    EnvironmentParser negative = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.WATCH_EVENT_CAPACITY_PROPERTY, -1));
+    assertThrows(IllegalArgumentException.class, negative::getWatchEventCapacity);
+  }
+
+  @Test
+  void asynchronousExecutor() {
+    assertNull(this.parse(MemoryFileSystemBuilder.newEmpty()).getAsynchronousExecutor());
+    ExecutorService executor = ForkJoinPool.commonPool();
+    assertSame(executor, this.parse(MemoryFileSystemBuilder.newEmpty().setAsynchronousExecutor(executor)).getAsynchronousExecutor());
+  }
+
+  @Test
+  void invalidAsynchronousExecutor() {
+    assertThrows(NullPointerException.class, () -> MemoryFileSystemBuilder.newEmpty().setAsynchronousExecutor(null));
+    EnvironmentParser parser = new EnvironmentParser(Collections.singletonMap(MemoryFileSystemProperties.ASYNCHRONOUS_EXECUTOR_PROPERTY, "executor"));
+    assertThrows(IllegalArgumentException.class, parser::getAsynchronousExecutor);
+  }
+
+  @Test
+  void synchronousCompletion() {
+    assertFalse(this.parse(MemoryFileSystemBuilder.newEmpty()).isSynchronousCompletion());
+    assertTrue(this.parse(MemoryFileSystemBuilder.newEmpty().setSynchronousCompletion(true)).isSynchronousCompletion());
+  }
+
   private EnvironmentParser parse(MemoryFileSystemBuilder builder) {
     return new EnvironmentParser(builder.buildEnvironment());
   }
@@ -6,7 +6,10 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
@@ -43,4 +46,27 @@ class FileChannelTest {
     assertFalse(channel.isOpen());
   }
 
+  @Test
+  void map() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+
+    Path file = Files.createFile(fileSystem.getPath("file"));
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      assertThrows(IllegalArgumentException.class, () -> channel.map(MapMode.READ_ONLY, -1L, 1L));
+      assertThrows(IllegalArgumentException.class, () -> channel.map(MapMode.READ_ONLY, 0L, -1L));
+      assertThrows(IllegalArgumentException.class, () -> channel.map(MapMode.READ_ONLY, 0L, Integer.MAX_VALUE + 1L));
+      assertThrows(NonWritableChannelException.class, () -> channel.map(MapMode.READ_WRITE, 0L, 1L));
+      assertThrows(UnsupportedOperationException.class, () -> channel.map(MapMode.READ_ONLY, 0L, 1L));
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      assertThrows(NonReadableChannelException.class, () -> channel.map(MapMode.READ_ONLY, 0L, 1L));
+    }
+
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    channel.close();
+    assertThrows(ClosedChannelException.class, () -> channel.map(MapMode.READ_ONLY, 0L, 1L));
+  }
+
 }
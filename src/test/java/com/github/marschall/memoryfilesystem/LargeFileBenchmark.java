@@ -0,0 +1,62 @@
+package com.github.marschall.memoryfilesystem;
+
+import static com.github.marschall.memoryfilesystem.LargeFileTest.read;
+import static com.github.marschall.memoryfilesystem.LargeFileTest.write;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Measures writing and reading large files.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=LargeFileBenchmark}.</p>
+ */
+@Tag("benchmark")
+class LargeFileBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  /**
+   * Writes and reads a 4 GB file, needs about 5 GB of heap.
+   */
+  @Test
+  void fourGigabytes() throws IOException {
+    long size = 4L * 1024L * 1024L * 1024L;
+    Path path = this.extension.getFileSystem().getPath("large");
+    long writeDuration = write(path, size, true);
+    long readDuration = read(path, size, true);
+    System.out.printf("%d MB written in %d ms, read in %d ms%n", size / (1024L * 1024L),
+            TimeUnit.NANOSECONDS.toMillis(writeDuration), TimeUnit.NANOSECONDS.toMillis(readDuration));
+  }
+
+  /**
+   * Compares the throughput of different block sizes, needs about 1 GB of heap.
+   */
+  @Test
+  void blockSizeThroughput() throws IOException {
+    long size = 512L * 1024L * 1024L;
+    int[] blockSizes = {MemoryInode.BLOCK_SIZE, 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024};
+    for (int blockSize : blockSizes) {
+      try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setBlockSize(blockSize).build()) {
+        Path path = fileSystem.getPath("large");
+        long writeDuration = write(path, size, false);
+        long readDuration = read(path, size, false);
+        System.out.printf("block size %7d: write %5d MB/s, read %5d MB/s%n", blockSize,
+                megabytesPerSecond(size, writeDuration), megabytesPerSecond(size, readDuration));
+      }
+    }
+  }
+
+  private static long megabytesPerSecond(long size, long durationNanos) {
+    long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(durationNanos), 1L);
+    return size * 1_000_000L / micros / (1024L * 1024L);
+  }
+
+}
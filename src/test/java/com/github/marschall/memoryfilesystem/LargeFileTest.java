@@ -0,0 +1,122 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class LargeFileTest {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  @Test
+  void doubleIndirectBlocks() throws IOException {
+    // a couple of blocks into the double indirect blocks
+    long size = (MemoryInode.DOUBLE_INDIRECT_OFFSET + 3L) * MemoryInode.BLOCK_SIZE + 17L;
+    this.writeAndReadBack(size);
+  }
+
+  @Test
+  void lastIndirectBlock() throws IOException {
+    long size = MemoryInode.DOUBLE_INDIRECT_OFFSET * MemoryInode.BLOCK_SIZE;
+    this.writeAndReadBack(size);
+  }
+
+  @Test
+  void smallBlocks() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setBlockSize(100).build()) {
+      // a couple of blocks into the double indirect blocks
+      long size = (MemoryInode.DOUBLE_INDIRECT_OFFSET + 3L) * 100L + 17L;
+      writeAndReadBack(fileSystem.getPath("large"), size);
+    }
+  }
+
+  @Test
+  void largeBlocks() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setBlockSize(1024 * 1024).build()) {
+      writeAndReadBack(fileSystem.getPath("large"), 5L * 1024L * 1024L + 17L);
+    }
+  }
+
+  private void writeAndReadBack(long size) throws IOException {
+    writeAndReadBack(this.extension.getFileSystem().getPath("large"), size);
+  }
+
+  private static void writeAndReadBack(Path path, long size) throws IOException {
+    write(path, size, true);
+    read(path, size, true);
+  }
+
+  static long write(Path path, long size, boolean pattern) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long start = System.nanoTime();
+    try (FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE)) {
+      long position = 0L;
+      while (position < size) {
+        if (pattern) {
+          fill(buffer, position, size);
+        } else {
+          buffer.clear();
+          buffer.limit((int) Math.min(buffer.capacity(), size - position));
+        }
+        while (buffer.hasRemaining()) {
+          position += channel.write(buffer);
+        }
+      }
+      assertEquals(size, channel.size());
+    }
+    return System.nanoTime() - start;
+  }
+
+  static long read(Path path, long size, boolean verify) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long start = System.nanoTime();
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      assertEquals(size, channel.size());
+      long position = 0L;
+      while (position < size) {
+        buffer.clear();
+        int read = channel.read(buffer);
+        if (verify) {
+          for (int i = 0; i < read; i++) {
+            if (buffer.get(i) != valueAt(position + i)) {
+              fail("unexpected value at " + (position + i));
+            }
+          }
+        }
+        position += read;
+      }
+      buffer.clear();
+      assertEquals(-1, channel.read(buffer));
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static void fill(ByteBuffer buffer, long position, long size) {
+    buffer.clear();
+    int length = (int) Math.min(buffer.capacity(), size - position);
+    for (int i = 0; i < length; i++) {
+      buffer.put(valueAt(position + i));
+    }
+    buffer.flip();
+  }
+
+  private static byte valueAt(long position) {
+    // include the block number so misplaced blocks are detected
+    return (byte) (position ^ (position / MemoryInode.BLOCK_SIZE));
+  }
+
+}
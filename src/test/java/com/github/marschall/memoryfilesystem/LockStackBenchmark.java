@@ -0,0 +1,51 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Measures the cost of look ups.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=LockStackBenchmark}.</p>
+ */
+@Tag("benchmark")
+class LockStackBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  /**
+   * Measures the bytes allocated by looking up an existing file.
+   */
+  @Test
+  void lookUpAllocation() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path file = fileSystem.getPath("/a/b/c/d/file");
+    Files.createDirectories(file.getParent());
+    Files.createFile(file);
+
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    int iterations = 1_000_000;
+    for (int round = 0; round < 5; round++) {
+      long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        if (!Files.exists(file)) {
+          throw new AssertionError("file missing");
+        }
+      }
+      long duration = System.nanoTime() - start;
+      long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      System.out.printf("Files.exists: %,d ns/op, %,d bytes/op%n", duration / iterations, allocated / iterations);
+    }
+  }
+
+}
@@ -0,0 +1,89 @@
+package com.github.marschall.memoryfilesystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class LockStackTest {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  @Test
+  void releaseToMark() {
+    ReentrantReadWriteLock outer = new ReentrantReadWriteLock();
+    ReentrantReadWriteLock inner = new ReentrantReadWriteLock();
+    LockStack stack = LockStack.current();
+
+    int outerMark = stack.mark();
+    stack.push(outer.readLock());
+    int innerMark = stack.mark();
+    stack.push(inner.writeLock());
+    stack.push(inner.readLock());
+    assertEquals(innerMark + 2, stack.mark());
+
+    stack.releaseTo(innerMark);
+    assertFalse(inner.isWriteLocked());
+    assertEquals(0, inner.getReadLockCount());
+    assertEquals(1, outer.getReadLockCount());
+
+    stack.releaseTo(outerMark);
+    assertEquals(0, outer.getReadLockCount());
+    assertEquals(outerMark, stack.mark());
+  }
+
+  @Test
+  void grows() {
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    LockStack stack = LockStack.current();
+    int mark = stack.mark();
+    for (int i = 0; i < 100; i++) {
+      stack.push(lock.readLock());
+    }
+    assertEquals(100, lock.getReadLockCount());
+    stack.releaseTo(mark);
+    assertEquals(0, lock.getReadLockCount());
+  }
+
+  @Test
+  void locksReleasedAfterFailedLookUp() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    int mark = LockStack.current().mark();
+
+    assertThrows(NoSuchFileException.class, () -> Files.readAttributes(directory.resolve("missing"), BasicFileAttributes.class));
+    assertEquals(mark, LockStack.current().mark());
+
+    // would block if the lock on the directory had not been released
+    Files.createFile(directory.resolve("file"));
+    assertTrue(Files.exists(directory.resolve("file")));
+    assertEquals(mark, LockStack.current().mark());
+  }
+
+  @Test
+  void symlinkLoop() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path a = fileSystem.getPath("/a");
+    Path b = fileSystem.getPath("/b");
+    Files.createSymbolicLink(a, b);
+    Files.createSymbolicLink(b, a);
+    int mark = LockStack.current().mark();
+
+    assertThrows(FileSystemLoopException.class, () -> Files.readAttributes(a, BasicFileAttributes.class));
+    assertEquals(mark, LockStack.current().mark());
+  }
+
+}
@@ -0,0 +1,44 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the look up cache.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=LookUpCacheBenchmark}.</p>
+ */
+@Tag("benchmark")
+class LookUpCacheBenchmark {
+
+  /**
+   * Measures looking up a deep path with and without the cache.
+   */
+  @Test
+  void lookUpThroughput() throws IOException {
+    for (int cacheSize : new int[] {0, 1024}) {
+      try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(cacheSize).build()) {
+        Path file = fileSystem.getPath("/data/tenant/x/y/z/file");
+        Files.createDirectories(file.getParent());
+        Files.createFile(file);
+
+        int iterations = 1_000_000;
+        for (int round = 0; round < 5; round++) {
+          long start = System.nanoTime();
+          for (int i = 0; i < iterations; i++) {
+            Files.readAttributes(file, BasicFileAttributes.class);
+          }
+          long duration = System.nanoTime() - start;
+          System.out.printf("cache size %4d: %,d ns/op%n", cacheSize, duration / iterations);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,227 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.attribute.PosixFilePermission.OTHERS_READ;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
+import static java.nio.file.attribute.PosixFilePermission.OWNER_WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+class LookUpCacheTest {
+
+  @Test
+  void hitsAndMisses() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16).build()) {
+      Path file = fileSystem.getPath("/data/tenant/file");
+      Files.createDirectories(file.getParent());
+      Files.createFile(file);
+      FileStore store = fileSystem.getFileStores().iterator().next();
+      long hits = (Long) store.getAttribute("lookUpCache:hits");
+      long misses = (Long) store.getAttribute("lookUpCache:misses");
+
+      assertTrue(Files.exists(file));
+      assertTrue(Files.exists(file));
+      assertTrue(Files.exists(fileSystem.getPath("/data/tenant/file")));
+
+      assertEquals(misses + 1L, store.getAttribute("lookUpCache:misses"));
+      assertEquals(hits + 2L, store.getAttribute("lookUpCache:hits"));
+    }
+  }
+
+  @Test
+  void disabledByDefault() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build()) {
+      Path file = Files.createFile(fileSystem.getPath("/file"));
+      assertTrue(Files.exists(file));
+      assertTrue(Files.exists(file));
+      FileStore store = fileSystem.getFileStores().iterator().next();
+      assertEquals(0L, store.getAttribute("lookUpCache:hits"));
+      assertEquals(0L, store.getAttribute("lookUpCache:misses"));
+      assertThrows(UnsupportedOperationException.class, () -> store.getAttribute("lookUpCache:size"));
+    }
+  }
+
+  @Test
+  void delete() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16).build()) {
+      Path file = fileSystem.getPath("/data/file");
+      Files.createDirectories(file.getParent());
+      Files.createFile(file);
+      assertTrue(Files.exists(file));
+
+      Files.delete(file);
+      assertFalse(Files.exists(file));
+
+      Files.createDirectory(file);
+      assertTrue(Files.isDirectory(file));
+      assertTrue(Files.deleteIfExists(file));
+      assertFalse(Files.exists(file));
+    }
+  }
+
+  @Test
+  void move() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16).build()) {
+      Path source = fileSystem.getPath("/source");
+      Path target = fileSystem.getPath("/target");
+      Path file = source.resolve("file");
+      Files.createDirectory(source);
+      Files.createFile(file);
+      Files.createDirectory(target);
+      assertTrue(Files.isRegularFile(file));
+      assertTrue(Files.isDirectory(target));
+
+      Files.delete(target);
+      Files.move(source, target);
+      assertFalse(Files.exists(file));
+      assertTrue(Files.isRegularFile(target.resolve("file")));
+
+      // replace an existing target
+      Files.createDirectory(source);
+      assertTrue(Files.isDirectory(source));
+      Files.move(target.resolve("file"), source.resolve("file"));
+      Files.move(source, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+      assertFalse(Files.exists(source));
+      assertTrue(Files.isRegularFile(target.resolve("file")));
+    }
+  }
+
+  @Test
+  void symbolicLinkNotCached() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16).build()) {
+      Path first = Files.createDirectory(fileSystem.getPath("/first"));
+      Path second = Files.createDirectory(fileSystem.getPath("/second"));
+      Files.createFile(first.resolve("file"));
+      Path link = Files.createSymbolicLink(fileSystem.getPath("/link"), first);
+
+      assertTrue(Files.exists(link.resolve("file")));
+      assertTrue(Files.isSymbolicLink(link));
+
+      Files.delete(link);
+      Files.createSymbolicLink(link, second);
+      assertFalse(Files.exists(link.resolve("file")));
+    }
+  }
+
+  @Test
+  void bounded() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(4).build()) {
+      for (int i = 0; i < 10; i++) {
+        Files.createFile(fileSystem.getPath("/file" + i));
+      }
+      for (int round = 0; round < 2; round++) {
+        for (int i = 0; i < 10; i++) {
+          assertTrue(Files.exists(fileSystem.getPath("/file" + i)));
+        }
+      }
+    }
+  }
+
+  @Test
+  void permissionsCheckedOnHit() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty()
+            .addUser(PosixPermissionFileSystemExtension.OWNER)
+            .addGroup(PosixPermissionFileSystemExtension.OWNER)
+            .addUser(PosixPermissionFileSystemExtension.OTHER)
+            .addGroup(PosixPermissionFileSystemExtension.OTHER)
+            .addFileAttributeView(PosixFileAttributeView.class)
+            .setLookUpCacheSize(16)
+            .build()) {
+      Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+      Path file = Files.createFile(directory.resolve("file"));
+      assertTrue(Files.exists(file));
+
+      EnumSet<PosixFilePermission> permissions = EnumSet.of(OWNER_READ, OWNER_WRITE, OWNER_EXECUTE, OTHERS_READ);
+      Files.getFileAttributeView(directory, PosixFileAttributeView.class).setPermissions(permissions);
+      Files.readAttributes(file, BasicFileAttributes.class);
+
+      UserPrincipal other = fileSystem.getUserPrincipalLookupService().lookupPrincipalByName(PosixPermissionFileSystemExtension.OTHER);
+      CurrentUser.useDuring(other, () -> {
+        assertThrows(AccessDeniedException.class, () -> Files.readAttributes(file, BasicFileAttributes.class));
+      });
+    }
+  }
+
+  @Test
+  void deleteKeepsUnrelatedEntries() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16).build()) {
+      Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+      Path kept = Files.createFile(directory.resolve("kept"));
+      Path deleted = Files.createFile(directory.resolve("deleted"));
+      FileStore store = fileSystem.getFileStores().iterator().next();
+      assertTrue(Files.exists(kept));
+      assertTrue(Files.exists(deleted));
+      assertTrue(Files.exists(directory));
+
+      Files.delete(deleted);
+      long hits = (Long) store.getAttribute("lookUpCache:hits");
+      long misses = (Long) store.getAttribute("lookUpCache:misses");
+      assertTrue(Files.exists(kept));
+      assertTrue(Files.exists(directory));
+
+      assertEquals(hits + 2L, store.getAttribute("lookUpCache:hits"));
+      assertEquals(misses, store.getAttribute("lookUpCache:misses"));
+    }
+  }
+
+  @Test
+  void moveInvalidatesSubtree() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(16).build()) {
+      Path source = fileSystem.getPath("/a/b");
+      Path target = fileSystem.getPath("/a/c");
+      Path file = source.resolve("file");
+      Files.createDirectories(source);
+      Files.createFile(file);
+      assertTrue(Files.isRegularFile(file));
+      assertTrue(Files.isDirectory(source));
+
+      Files.move(source, target);
+      assertFalse(Files.exists(file));
+      assertFalse(Files.exists(source));
+      assertTrue(Files.isRegularFile(target.resolve("file")));
+
+      // a new directory at the old path must not resolve to the moved file
+      Files.createDirectory(source);
+      assertFalse(Files.exists(file));
+    }
+  }
+
+  @Test
+  void referencedEntriesSurviveEviction() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setLookUpCacheSize(4).build()) {
+      Path hot = Files.createFile(fileSystem.getPath("/hot"));
+      for (int i = 0; i < 10; i++) {
+        Files.createFile(fileSystem.getPath("/file" + i));
+      }
+      FileStore store = fileSystem.getFileStores().iterator().next();
+      assertTrue(Files.exists(hot));
+      long hits = (Long) store.getAttribute("lookUpCache:hits");
+      long misses = (Long) store.getAttribute("lookUpCache:misses");
+
+      for (int i = 0; i < 10; i++) {
+        assertTrue(Files.exists(fileSystem.getPath("/file" + i)));
+        assertTrue(Files.exists(hot));
+      }
+
+      assertEquals(hits + 10L, store.getAttribute("lookUpCache:hits"));
+      assertEquals(misses + 10L, store.getAttribute("lookUpCache:misses"));
+    }
+  }
+
+}
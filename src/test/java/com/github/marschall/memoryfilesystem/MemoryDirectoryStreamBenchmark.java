@@ -0,0 +1,56 @@
+package com.github.marschall.memoryfilesystem;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Measures iterating over directories.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=MemoryDirectoryStreamBenchmark}.</p>
+ */
+@Tag("benchmark")
+class MemoryDirectoryStreamBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  /**
+   * Measures the time to the first 1000 entries of directories of
+   * different sizes.
+   */
+  @Test
+  void firstEntriesLatency() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    int size = 0;
+    for (int target : new int[] {1_000, 10_000, 100_000, 1_000_000}) {
+      for (; size < target; size++) {
+        Files.createDirectory(directory.resolve("entry" + size));
+      }
+      int iterations = 100;
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+          Iterator<Path> iterator = stream.iterator();
+          for (int j = 0; j < 1000; j++) {
+            assertNotNull(iterator.next());
+          }
+        }
+      }
+      long duration = System.nanoTime() - start;
+      System.out.printf("%,9d entries: %,d us to the first 1000%n", size, TimeUnit.NANOSECONDS.toMicros(duration / iterations));
+    }
+  }
+
+}
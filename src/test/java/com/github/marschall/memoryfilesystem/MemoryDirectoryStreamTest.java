@@ -242,6 +242,31 @@ class MemoryDirectoryStreamTest {
   //    FileSystem fileSystem = this.rule.getFileSystem();
   //
   //    Files.createFile(fileSystem.getPath("a.java"));
+  @Test
+  void modifyWhileIterating() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    for (int i = 0; i < 100; i++) {
+      Files.createFile(directory.resolve("existing" + i));
+    }
+
+    Set<String> seen = new HashSet<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      int i = 0;
+      for (Path each : stream) {
+        assertTrue(seen.add(each.getFileName().toString()));
+        // the iterator is weakly consistent, may or may not see the new
+        // entries but must not fail
+        Files.createFile(directory.resolve("added" + i));
+        Files.delete(each);
+        i++;
+      }
+    }
+    for (int i = 0; i < 100; i++) {
+      assertTrue(seen.contains("existing" + i));
+    }
+  }
+
   //    Files.createFile(fileSystem.getPath("b.java"));
   //    Files.createFile(fileSystem.getPath("c.java"));
   //    Files.createFile(fileSystem.getPath("d.cpp"));
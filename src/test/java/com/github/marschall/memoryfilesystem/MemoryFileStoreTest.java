@@ -99,4 +99,12 @@ class MemoryFileStoreTest {
     assertThat(blockSize, greaterThan(0L));
   }
 
+  @Test
+  void getCustomBlockSize() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setBlockSize(64 * 1024).build()) {
+      MemoryFileStore fileStore = (MemoryFileStore) fileSystem.getFileStores().iterator().next();
+      assertEquals(64 * 1024, fileStore.getBlockSize());
+    }
+  }
+
 }
@@ -12,11 +12,14 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
@@ -25,12 +28,14 @@ import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.text.ParseException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -312,6 +317,86 @@ class MemoryFileSystemCopyTest {
     }
   }
 
+  @Test
+  void copyOnWrite() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path a = fileSystem.getPath("a");
+    Path b = fileSystem.getPath("b");
+    Path c = fileSystem.getPath("c");
+
+    byte[] contents = new byte[MemoryInode.BLOCK_SIZE * 3];
+    Arrays.fill(contents, (byte) 'a');
+    Files.write(a, contents);
+
+    Files.copy(a, b);
+    Files.copy(b, c);
+
+    // write to the second block of every file
+    long position = MemoryInode.BLOCK_SIZE + 1L;
+    writeAt(a, position, (byte) '1');
+    writeAt(b, position, (byte) '2');
+    writeAt(c, position, (byte) '3');
+
+    assertContents(a, contents, position, (byte) '1');
+    assertContents(b, contents, position, (byte) '2');
+    assertContents(c, contents, position, (byte) '3');
+  }
+
+  @Test
+  void copyOnWriteAcrossFileSystems() throws IOException {
+    FileSystem source = this.extension.getFileSystem();
+    try (FileSystem target = MemoryFileSystemBuilder.newEmpty().setStoreFileContentsOffHeap(true).build("target")) {
+      Path a = source.getPath("a");
+      Path b = target.getPath("b");
+
+      byte[] contents = new byte[MemoryInode.BLOCK_SIZE + 1];
+      Arrays.fill(contents, (byte) 'a');
+      Files.write(a, contents);
+      Files.copy(a, b);
+
+      writeAt(a, 0L, (byte) '1');
+
+      assertContents(a, contents, 0L, (byte) '1');
+      assertArrayEquals(contents, Files.readAllBytes(b));
+    }
+  }
+
+  @Test
+  void copyAcrossBlockSizes() throws IOException {
+    FileSystem source = this.extension.getFileSystem();
+    try (FileSystem target = MemoryFileSystemBuilder.newEmpty().setBlockSize(1000).build("target")) {
+      Path a = source.getPath("/a");
+      Path b = target.getPath("/b");
+
+      byte[] contents = new byte[MemoryInode.BLOCK_SIZE * 2 + 1];
+      for (int i = 0; i < contents.length; i++) {
+        contents[i] = (byte) i;
+      }
+      Files.write(a, contents);
+      // leave a hole
+      writeAt(a, MemoryInode.BLOCK_SIZE * 4L, (byte) 1);
+      byte[] expected = Files.readAllBytes(a);
+
+      Files.copy(a, b);
+      assertArrayEquals(expected, Files.readAllBytes(b));
+
+      Files.copy(b, source.getPath("/c"));
+      assertArrayEquals(expected, Files.readAllBytes(source.getPath("/c")));
+    }
+  }
+
+  private static void writeAt(Path path, long position, byte value) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{value}), position);
+    }
+  }
+
+  private static void assertContents(Path path, byte[] original, long position, byte value) throws IOException {
+    byte[] expected = original.clone();
+    expected[(int) position] = value;
+    assertArrayEquals(expected, Files.readAllBytes(path));
+  }
+
   @Test
   void copyReplaceExsitingNoAttributes() throws IOException {
     FileSystem fileSystem = this.extension.getFileSystem();
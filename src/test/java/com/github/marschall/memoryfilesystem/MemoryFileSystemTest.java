@@ -687,6 +687,55 @@ class MemoryFileSystemTest {
     assertArrayEquals(content, Files.readAllBytes(to));
   }
 
+  @Test
+  void transferFromSameFile() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    byte[] content = new byte[100];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Path path = Files.write(fileSystem.getPath("file"), content);
+    Path link = Files.createLink(fileSystem.getPath("link"), path);
+
+    try (FileChannel to = FileChannel.open(path, READ, WRITE);
+         FileChannel from = FileChannel.open(path, READ);
+         FileChannel fromLink = FileChannel.open(link, READ)) {
+      assertEquals(50L, to.transferFrom(from, 100L, 50L));
+      assertEquals(50L, from.position());
+      fromLink.position(50L);
+      assertEquals(50L, to.transferFrom(fromLink, 150L, 50L));
+      assertEquals(100L, to.transferFrom(to, 200L, 100L));
+    }
+    byte[] expected = new byte[300];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = (byte) (i % 100);
+    }
+    assertArrayEquals(expected, Files.readAllBytes(path));
+  }
+
+  @Test
+  void transferToSameFile() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    byte[] content = new byte[100];
+    for (int i = 0; i < content.length; i++) {
+      content[i] = (byte) i;
+    }
+    Path path = Files.write(fileSystem.getPath("file"), content);
+
+    try (FileChannel from = FileChannel.open(path, READ, WRITE);
+         FileChannel to = FileChannel.open(path, WRITE, APPEND)) {
+      assertEquals(50L, from.transferTo(0L, 50L, to));
+      from.position(150L);
+      assertEquals(50L, from.transferTo(50L, 50L, from));
+      assertEquals(200L, from.position());
+    }
+    byte[] expected = new byte[200];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = (byte) (i % 100);
+    }
+    assertArrayEquals(expected, Files.readAllBytes(path));
+  }
+
   private void writeBigContents(Path path) throws IOException {
     try (SeekableByteChannel channel = Files.newByteChannel(path, WRITE, CREATE_NEW)) {
       ByteBuffer src = ByteBuffer.wrap(SAMPLE_DATA);
@@ -1,10 +1,16 @@
 package com.github.marschall.memoryfilesystem;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.nio.ByteBuffer;
+
 import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
 import org.openjdk.jol.vm.VM;
 
 class MemoryInodeTest {
@@ -21,4 +27,102 @@ class MemoryInodeTest {
     assertThat(VM.current().sizeOf(array), lessThanOrEqualTo(16384L));
   }
 
+  @Test
+  void emptyFileFootprint() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    // no block at all, mostly the lock
+    assertThat(footprint(inode), lessThanOrEqualTo(512L));
+  }
+
+  @Test
+  void tinyFileFootprint() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    inode.write(new byte[50], 0L, 0, 50);
+    // a tightly sized direct block instead of a full one
+    assertThat(footprint(inode), lessThanOrEqualTo(512L));
+  }
+
+  @Test
+  void directBlockGrows() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    byte[] expected = new byte[MemoryInode.BLOCK_SIZE + 10];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = (byte) i;
+      inode.writeAtEnd(expected, i, 1);
+    }
+
+    byte[] contents = new byte[expected.length];
+    assertEquals(expected.length, inode.read(contents, 0L, 0, contents.length));
+    assertArrayEquals(expected, contents);
+  }
+
+  @Test
+  void writeAfterSmallDirectBlock() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    inode.write(new byte[]{1}, 0L, 0, 1);
+    inode.write(new byte[]{2}, MemoryInode.BLOCK_SIZE + 1L, 0, 1);
+
+    byte[] contents = new byte[MemoryInode.BLOCK_SIZE + 2];
+    assertEquals(contents.length, inode.read(contents, 0L, 0, contents.length));
+    byte[] expected = new byte[contents.length];
+    expected[0] = 1;
+    expected[MemoryInode.BLOCK_SIZE + 1] = 2;
+    assertArrayEquals(expected, contents);
+  }
+
+  @Test
+  void truncateReleasesMemory() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 1);
+    long empty = footprint(inode);
+
+    int size = (int) (MemoryInode.DOUBLE_INDIRECT_OFFSET + 2L) * MemoryInode.BLOCK_SIZE;
+    inode.write(ByteBuffer.allocate(size), 0L, Integer.MAX_VALUE);
+    long full = footprint(inode);
+    assertThat(full, greaterThanOrEqualTo((long) size));
+
+    inode.truncate(MemoryInode.BLOCK_SIZE + 1L);
+    long truncated = footprint(inode);
+    // two blocks and the indirect table
+    assertThat(truncated - empty, lessThan(3L * 4096L + 16384L));
+
+    inode.truncate(0L);
+    assertThat(footprint(inode), lessThanOrEqualTo(empty));
+  }
+
+  @Test
+  void releasedAfterLastClose() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 0);
+    int size = MemoryInode.BLOCK_SIZE * 4;
+    inode.write(ByteBuffer.allocate(size), 0L, Integer.MAX_VALUE);
+
+    inode.opened();
+    inode.opened();
+    inode.unlinked(null);
+    inode.closed();
+    // still open, the contents have to stay readable
+    assertEquals(size, inode.size());
+    assertThat(footprint(inode), greaterThanOrEqualTo((long) size));
+
+    inode.closed();
+    assertEquals(0L, inode.size());
+    assertThat(footprint(inode), lessThan((long) MemoryInode.BLOCK_SIZE));
+  }
+
+  @Test
+  void truncateZerosTail() {
+    MemoryInode inode = new MemoryInode(BlockAllocator.HEAP, 1);
+    inode.write(new byte[]{1, 2, 3, 4}, 0L, 0, 4);
+    inode.truncate(2L);
+    inode.write(new byte[]{5}, 4L, 0, 1);
+
+    byte[] contents = new byte[5];
+    assertEquals(5, inode.read(contents, 0L, 0, 5));
+    assertArrayEquals(new byte[]{1, 2, 0, 0, 5}, contents);
+  }
+
+  private static long footprint(MemoryInode inode) {
+    // the allocator is shared by all files of a file system
+    return GraphLayout.parseInstance(inode).subtract(GraphLayout.parseInstance(BlockAllocator.HEAP)).totalSize();
+  }
+
 }
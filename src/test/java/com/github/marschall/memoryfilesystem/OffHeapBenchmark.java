@@ -0,0 +1,65 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures storing file contents off heap.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=OffHeapBenchmark}.</p>
+ */
+@Tag("benchmark")
+class OffHeapBenchmark {
+
+  /**
+   * Compares the garbage collection times of a heap and an off heap file
+   * system holding 1 GB of data, needs about 2 GB of heap.
+   */
+  @Test
+  void garbageCollectionTimes() throws IOException {
+    long size = 1024L * 1024L * 1024L;
+    try (FileSystem heap = MemoryFileSystemBuilder.newEmpty().build()) {
+      long time = garbageCollectionTime(heap, size);
+      System.out.printf("heap: %d ms spent in garbage collection%n", time);
+    }
+    System.gc();
+    try (FileSystem offHeap = MemoryFileSystemBuilder.newEmpty().setStoreFileContentsOffHeap(true).build()) {
+      long time = garbageCollectionTime(offHeap, size);
+      System.out.printf("off heap: %d ms spent in garbage collection%n", time);
+    }
+  }
+
+  private static long garbageCollectionTime(FileSystem fileSystem, long size) throws IOException {
+    Path path = fileSystem.getPath("large");
+    ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      while (channel.size() < size) {
+        buffer.clear();
+        channel.write(buffer);
+      }
+    }
+    long before = totalGarbageCollectionTime();
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+    }
+    return totalGarbageCollectionTime() - before;
+  }
+
+  private static long totalGarbageCollectionTime() {
+    long total = 0L;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(bean.getCollectionTime(), 0L);
+    }
+    return total;
+  }
+
+}
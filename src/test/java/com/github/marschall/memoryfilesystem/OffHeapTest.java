@@ -0,0 +1,132 @@
+package com.github.marschall.memoryfilesystem;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OffHeapTest {
+
+  private FileSystem fileSystem;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.fileSystem = MemoryFileSystemBuilder.newEmpty()
+            .setStoreFileContentsOffHeap(true)
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    this.fileSystem.close();
+  }
+
+  @Test
+  void readWrite() throws IOException {
+    byte[] contents = randomBytes(MemoryInode.BLOCK_SIZE * 3 + 7);
+    Path path = this.fileSystem.getPath("file");
+    Files.write(path, contents);
+    assertArrayEquals(contents, Files.readAllBytes(path));
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(contents.length);
+      assertEquals(contents.length, channel.read(buffer, 0L));
+      buffer.flip();
+      byte[] readBack = new byte[contents.length];
+      buffer.get(readBack);
+      assertArrayEquals(contents, readBack);
+    }
+  }
+
+  @Test
+  void transferToOutputStream() throws IOException {
+    byte[] contents = randomBytes(MemoryInode.BLOCK_SIZE + 2);
+    Path path = this.fileSystem.getPath("file");
+    Files.write(path, contents);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream input = Files.newInputStream(path)) {
+      assertEquals(1, input.skip(1L));
+      assertEquals(contents.length - 1, ((BlockInputStream) input).transferTo​(output));
+    }
+    byte[] expected = new byte[contents.length - 1];
+    System.arraycopy(contents, 1, expected, 0, expected.length);
+    assertArrayEquals(expected, output.toByteArray());
+  }
+
+  @Test
+  void copy() throws IOException {
+    byte[] contents = randomBytes(MemoryInode.BLOCK_SIZE * 2);
+    Path source = this.fileSystem.getPath("source");
+    Files.write(source, contents);
+    Path target = Files.copy(source, this.fileSystem.getPath("target"));
+    assertArrayEquals(contents, Files.readAllBytes(target));
+  }
+
+  @Test
+  void deleteHardLink() throws IOException {
+    byte[] contents = randomBytes(MemoryInode.BLOCK_SIZE + 1);
+    Path target = this.fileSystem.getPath("target");
+    Files.write(target, contents);
+    Path link = Files.createLink(this.fileSystem.getPath("link"), target);
+
+    Files.delete(target);
+    assertArrayEquals(contents, Files.readAllBytes(link));
+
+    Files.write(target, contents);
+    Files.delete(link);
+    assertArrayEquals(contents, Files.readAllBytes(target));
+  }
+
+  @Test
+  void replaceHardLink() throws IOException {
+    byte[] contents = randomBytes(MemoryInode.BLOCK_SIZE + 1);
+    Path target = this.fileSystem.getPath("target");
+    Files.write(target, contents);
+    Path link = Files.createLink(this.fileSystem.getPath("link"), target);
+    Path source = Files.write(this.fileSystem.getPath("source"), new byte[]{1});
+
+    Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    assertArrayEquals(new byte[]{1}, Files.readAllBytes(target));
+    assertArrayEquals(contents, Files.readAllBytes(link));
+  }
+
+  @Test
+  void replaceOpenFile() throws IOException {
+    Path target = Files.write(this.fileSystem.getPath("target"), new byte[]{1});
+    Path source = Files.write(this.fileSystem.getPath("source"), new byte[]{2});
+    try (FileChannel first = FileChannel.open(target, StandardOpenOption.READ);
+         FileChannel second = FileChannel.open(target, StandardOpenOption.READ)) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+      assertArrayEquals(new byte[]{2}, Files.readAllBytes(target));
+
+      // the replaced file stays readable until the last channel is closed
+      first.close();
+      ByteBuffer buffer = ByteBuffer.allocate(1);
+      assertEquals(1, second.read(buffer, 0L));
+      assertEquals(1, buffer.get(0));
+    }
+    assertArrayEquals(new byte[]{2}, Files.readAllBytes(target));
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(length).nextBytes(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,73 @@
+package com.github.marschall.memoryfilesystem;
+
+import static com.github.marschall.memoryfilesystem.ParsedGlobPathMatcherTest.REGEX_FLAGS;
+import static com.github.marschall.memoryfilesystem.ParsedGlobPathMatcherTest.matchesRecursive;
+import static com.github.marschall.memoryfilesystem.ParsedGlobPathMatcherTest.parseElements;
+
+import java.nio.file.FileSystem;
+import java.nio.file.PathMatcher;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.marschall.memoryfilesystem.GlobPathMatcher.GlobPattern;
+
+/**
+ * Measures {@link GlobPathMatcher} created by {@link PathParser#parseGlob(String, int)}.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=ParsedGlobPathMatcherBenchmark}.</p>
+ */
+@Tag("benchmark")
+class ParsedGlobPathMatcherBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  private final PathParser parser = new SingleEmptyRootPathParser("/", EmptyCharacterSet.INSTANCE);
+
+  /**
+   * Measures matching patterns with several {@code **} against paths
+   * that almost match.
+   */
+  @Test
+  void pathologicalPatterns() {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    String pattern = "**/a/**/b/**/c";
+    PathMatcher matcher = this.parser.parseGlob(pattern, REGEX_FLAGS);
+    List<GlobPattern> patterns = PathParser.convertToPatterns(parseElements(pattern), REGEX_FLAGS);
+    for (int length : new int[] {8, 16, 24}) {
+      StringBuilder buffer = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+        buffer.append(i % 2 == 0 ? "a/" : "b/");
+      }
+      buffer.append('d');
+      ElementPath path = (ElementPath) fileSystem.getPath(buffer.toString());
+
+      long automaton = 0L;
+      long recursive = 0L;
+      for (int round = 0; round < 3; round++) {
+        int iterations = 1_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          if (matcher.matches(path)) {
+            throw new AssertionError("should not match");
+          }
+        }
+        automaton = (System.nanoTime() - start) / iterations;
+
+        iterations = 10;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          if (matchesRecursive(path.getNameElements(), patterns)) {
+            throw new AssertionError("should not match");
+          }
+        }
+        recursive = (System.nanoTime() - start) / iterations;
+      }
+      System.out.printf("%2d elements: automaton %,d ns, recursive %,d ns%n", length + 1, automaton, recursive);
+    }
+  }
+
+}
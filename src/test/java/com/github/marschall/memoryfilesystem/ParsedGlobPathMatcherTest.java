@@ -0,0 +1,178 @@
+package com.github.marschall.memoryfilesystem;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import com.github.marschall.memoryfilesystem.GlobPathMatcher.GlobPattern;
+
+/**
+ * Tests {@link GlobPathMatcher} created by {@link PathParser#parseGlob(String)}.
+ */
+class ParsedGlobPathMatcherTest {
+
+  static final int REGEX_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  private final PathParser parser = new SingleEmptyRootPathParser("/", EmptyCharacterSet.INSTANCE);
+
+  @Test
+  void elements() {
+    assertTrue(this.matches("*.java", "A.java"));
+    assertFalse(this.matches("*.java", "src/A.java"));
+    assertTrue(this.matches("src/*.java", "src/A.java"));
+    assertTrue(this.matches("/src/*.java", "/src/A.java"));
+    // relative paths are resolved against the current directory like by the regex matchers
+    assertTrue(this.matches("/src/*.java", "src/A.java"));
+    assertFalse(this.matches("/main/*.java", "src/A.java"));
+    assertFalse(this.matches("src/*.java", "src"));
+  }
+
+  @Test
+  void crossingDirectories() {
+    assertTrue(this.matches("**/*.java", "src/A.java"));
+    assertTrue(this.matches("**/*.java", "src/main/A.java"));
+    assertFalse(this.matches("**/*.java", "A.java"));
+    assertTrue(this.matches("src/**", "src/main"));
+    assertTrue(this.matches("src/**", "src"));
+    assertTrue(this.matches("**/a/**/b/**/c", "x/a/y/b/z/c"));
+    assertFalse(this.matches("**/a/**/b/**/c", "x/a/y/b/z/d"));
+    assertFalse(this.matches("**/a/**/b/**/c", "x/a/b/z/c"));
+  }
+
+  @Test
+  void sameAsRecursiveMatching() {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    String[] patternElements = {"**", "a", "b", "*", "?"};
+    String[] pathElements = {"a", "b", "c", "ab"};
+    Random random = new Random(42L);
+    for (int i = 0; i < 10_000; i++) {
+      String pattern = randomPath(random, patternElements, 1 + random.nextInt(5));
+      String path = randomPath(random, pathElements, 1 + random.nextInt(6));
+      GlobPathMatcher matcher = (GlobPathMatcher) this.parser.parseGlob(pattern, REGEX_FLAGS);
+      List<GlobPattern> patterns = PathParser.convertToPatterns(parseElements(pattern), REGEX_FLAGS);
+      ElementPath elementPath = (ElementPath) fileSystem.getPath(path);
+      assertEquals(matchesRecursive(elementPath.getNameElements(), patterns), matcher.matches(elementPath),
+              "pattern: " + pattern + ", path: " + path);
+    }
+  }
+
+  @Test
+  void getPathMatcher() {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    assertThat(fileSystem.getPathMatcher("glob:**/*.java"), instanceOf(GlobPathMatcher.class));
+    assertThat(fileSystem.getPathMatcher("glob:/src/*.java"), instanceOf(GlobPathMatcher.class));
+    // globs the automaton would match differently are transpiled
+    assertThat(fileSystem.getPathMatcher("glob:src/**"), instanceOf(RegexPathMatcher.class));
+    assertThat(fileSystem.getPathMatcher("glob:**.java"), instanceOf(RegexPathMatcher.class));
+    assertThat(fileSystem.getPathMatcher("glob:{src,test}/*.java"), instanceOf(RegexPathMatcher.class));
+    assertThat(fileSystem.getPathMatcher("glob:[a-z].java"), instanceOf(RegexPathMatcher.class));
+    assertThat(fileSystem.getPathMatcher("glob:a//b"), instanceOf(RegexPathMatcher.class));
+  }
+
+  @Test
+  void sameAsTranspiledGlob() {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    String[] patternElements = {"**", "a", "b", "*", "?", "a*", "*b"};
+    String[] pathElements = {"a", "b", "c", "ab", "A"};
+    Random random = new Random(42L);
+    int compiled = 0;
+    for (int i = 0; i < 10_000; i++) {
+      String pattern = (random.nextBoolean() ? "/" : "") + randomPath(random, patternElements, 1 + random.nextInt(5));
+      String path = (random.nextBoolean() ? "/" : "") + randomPath(random, pathElements, random.nextInt(6));
+      PathMatcher matcher = this.parser.compileGlob(pattern, REGEX_FLAGS);
+      if (matcher instanceof GlobPathMatcher) {
+        compiled += 1;
+      }
+      PathMatcher transpiled = this.parser.transpileGlob(pattern, REGEX_FLAGS);
+      Path p = fileSystem.getPath(path);
+      assertEquals(transpiled.matches(p), matcher.matches(p), "pattern: " + pattern + ", path: " + path);
+    }
+    assertThat(compiled, greaterThan(0));
+  }
+
+  private boolean matches(String pattern, String path) {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    return this.parser.parseGlob(pattern, REGEX_FLAGS).matches(fileSystem.getPath(path));
+  }
+
+  static List<String> parseElements(String pattern) {
+    List<String> elements = new ArrayList<>();
+    for (String element : pattern.split("/")) {
+      if (!element.isEmpty()) {
+        elements.add(element);
+      }
+    }
+    return elements;
+  }
+
+  private static String randomPath(Random random, String[] elements, int length) {
+    StringBuilder buffer = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        buffer.append('/');
+      }
+      buffer.append(elements[random.nextInt(elements.length)]);
+    }
+    return buffer.toString();
+  }
+
+  // the previous implementation of GlobPathMatcher
+  static boolean matchesRecursive(List<String> elements, List<GlobPattern> patterns) {
+    if (elements.isEmpty()) {
+      for (GlobPattern pattern : patterns) {
+        if (!pattern.isCrossingDirectoryBoundaries()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    String element = elements.get(0);
+    if (elements.size() == 1) {
+      GlobPattern match = patterns.get(0);
+      if (!match.matches(element)) {
+        return false;
+      } else if (patterns.size() == 1) {
+        return true;
+      } else {
+        return matchesRecursive(Collections.<String>emptyList(), patterns.subList(1, patterns.size()));
+      }
+    }
+
+    if (patterns.isEmpty()) {
+      return false;
+    }
+
+    GlobPattern firstMatch = patterns.get(0);
+    if (!firstMatch.isCrossingDirectoryBoundaries()) {
+      if (firstMatch.matches(element) && patterns.size() > 1) {
+        return matchesRecursive(elements.subList(1, elements.size()), patterns.subList(1, patterns.size()));
+      } else {
+        return false;
+      }
+    } else {
+      List<String> remainingElements = elements.subList(1, elements.size());
+      return matchesRecursive(remainingElements, patterns)
+              || matchesRecursive(remainingElements, patterns.subList(1, patterns.size()));
+    }
+  }
+
+}
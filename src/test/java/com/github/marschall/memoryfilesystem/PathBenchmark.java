@@ -0,0 +1,85 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Measures operations on paths.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=PathBenchmark}.</p>
+ */
+@Tag("benchmark")
+class PathBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  /**
+   * Measures {@link HashMap} throughput with paths as keys.
+   */
+  @Test
+  void hashMapThroughput() throws IOException {
+    try (FileSystem fileSystem = this.extension.getFileSystem()) {
+      int pathCount = 10_000;
+      Path[] paths = new Path[pathCount];
+      for (int i = 0; i < pathCount; i++) {
+        paths[i] = fileSystem.getPath("/home/user/projects/memoryfilesystem/src/file" + i + ".txt");
+      }
+      int iterations = 100;
+      for (int round = 0; round < 5; round++) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          Map<Path, Integer> map = new HashMap<>();
+          for (int j = 0; j < pathCount; j++) {
+            map.put(paths[j], j);
+          }
+          for (int j = 0; j < pathCount; j++) {
+            if (map.get(paths[j]) != j) {
+              throw new AssertionError("wrong value");
+            }
+          }
+        }
+        long duration = System.nanoTime() - start;
+        System.out.printf("HashMap<Path, ?> put and get: %,d ns/op%n", duration / (iterations * pathCount * 2L));
+      }
+    }
+  }
+
+  /**
+   * Measures looking up the same path instance repeatedly on file systems
+   * that normalize or case fold name elements.
+   */
+  @Test
+  void lookUpThroughput() throws IOException {
+    try (FileSystem macOs = MemoryFileSystemBuilder.newMacOs().build("macOs");
+         FileSystem windows = MemoryFileSystemBuilder.newWindows().build("windows")) {
+      this.lookUpThroughput("macOS", macOs.getPath("/Users/user/Projects/memoryfilesystem/src/main/File.java"));
+      this.lookUpThroughput("Windows", windows.getPath("C:\\Users\\user\\Projects\\memoryfilesystem\\src\\main\\File.java"));
+    }
+  }
+
+  private void lookUpThroughput(String name, Path file) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.createFile(file);
+    int iterations = 1_000_000;
+    for (int round = 0; round < 5; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        if (!Files.exists(file)) {
+          throw new AssertionError("file missing");
+        }
+      }
+      long duration = System.nanoTime() - start;
+      System.out.printf("%s Files.exists: %,d ns/op%n", name, duration / iterations);
+    }
+  }
+
+}
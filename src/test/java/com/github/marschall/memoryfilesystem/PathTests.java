@@ -7,6 +7,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.FileSystem;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.junit.jupiter.api.Test;
@@ -52,4 +53,66 @@ class PathTests {
     }
   }
 
+  @Test
+  void hashCodeConsistentWithEquals() throws IOException {
+    try (FileSystem fileSystem = this.extension.getFileSystem()) {
+      Path absolutePath = fileSystem.getPath("/parent/child.txt");
+      assertEquals(absolutePath.hashCode(), absolutePath.hashCode());
+      assertEquals(fileSystem.getPath("/parent/child.txt").hashCode(), absolutePath.hashCode());
+      assertEquals(fileSystem.getPath("/parent").resolve("child.txt").hashCode(), absolutePath.hashCode());
+      assertEquals(fileSystem.getPath("parent/child.txt").hashCode(), absolutePath.subpath(0, 2).hashCode());
+    }
+  }
+
+  @Test
+  void hashCodeCaseInsensitive() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newWindows().build("hash")) {
+      Path lower = fileSystem.getPath("C:\\parent\\child.txt");
+      Path upper = fileSystem.getPath("C:\\PARENT\\Child.TXT");
+      assertEquals(lower, upper);
+      assertEquals(lower.hashCode(), upper.hashCode());
+      assertEquals(fileSystem.getPath("parent\\child.txt").hashCode(), fileSystem.getPath("Parent\\CHILD.txt").hashCode());
+    }
+  }
+
+  @Test
+  void hashCodeDecomposition() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newMacOs().build("hash")) {
+      Path composed = fileSystem.getPath("/\u00C4");
+      Path decomposed = fileSystem.getPath("/A\u0308");
+      assertEquals(composed, decomposed);
+      assertEquals(composed.hashCode(), decomposed.hashCode());
+    }
+  }
+
+  @Test
+  void lookUpKeysSharedWithParent() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newWindows().build("keys")) {
+      Files.createDirectories(fileSystem.getPath("C:\\Parent\\Child"));
+      Files.createFile(fileSystem.getPath("C:\\Parent\\Child\\File.txt"));
+
+      Path file = fileSystem.getPath("c:\\PARENT\\child\\file.TXT");
+      assertTrue(Files.exists(file));
+      assertTrue(Files.isDirectory(file.getParent()));
+      assertTrue(Files.isDirectory(file.getParent().getParent()));
+      assertTrue(Files.exists(file));
+      assertEquals(fileSystem.getPath("C:\\Parent\\Child\\File.txt"), file.toRealPath());
+
+      Path missing = fileSystem.getPath("c:\\parent\\missing\\file.txt");
+      assertFalse(Files.exists(missing));
+      assertFalse(Files.exists(missing.getParent()));
+      assertTrue(Files.exists(missing.getParent().getParent()));
+    }
+  }
+
+  @Test
+  void equalsWithoutCollator() throws IOException {
+    try (FileSystem fileSystem = this.extension.getFileSystem()) {
+      assertEquals(fileSystem.getPath("/parent/child"), fileSystem.getPath("/parent/child"));
+      assertFalse(fileSystem.getPath("/parent/child").equals(fileSystem.getPath("/parent/Child")));
+      assertEquals(0, fileSystem.getPath("/parent/child").compareTo(fileSystem.getPath("/parent/child")));
+      assertTrue(fileSystem.getPath("/parent/a").compareTo(fileSystem.getPath("/parent/b")) < 0);
+    }
+  }
+
 }
@@ -0,0 +1,52 @@
+package com.github.marschall.memoryfilesystem;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Measures {@link RegexPathMatcher}.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=RegexPathMatcherBenchmark}.</p>
+ */
+@Tag("benchmark")
+class RegexPathMatcherBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  /**
+   * Measures matching globs and regexes against the paths of a tree.
+   */
+  @Test
+  void matchThroughput() {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path[] paths = new Path[10_000];
+    for (int i = 0; i < paths.length; i++) {
+      paths[i] = fileSystem.getPath("/project/src/main/java/com/example/module" + (i % 100) + "/Type" + i + (i % 3 == 0 ? ".java" : ".class"));
+    }
+    String[] patterns = {"glob:**/*.java", "glob:/project/test/**", "regex:/project/src/.*\\.java"};
+    for (String pattern : patterns) {
+      PathMatcher matcher = fileSystem.getPathMatcher(pattern);
+      long duration = Long.MAX_VALUE;
+      int matches = 0;
+      for (int round = 0; round < 50; round++) {
+        matches = 0;
+        long start = System.nanoTime();
+        for (Path path : paths) {
+          if (matcher.matches(path)) {
+            matches += 1;
+          }
+        }
+        // the fastest round is the least disturbed by GC and the JIT
+        duration = Math.min(duration, System.nanoTime() - start);
+      }
+      System.out.printf("%-32s %,d ns/op, %d matches%n", pattern, duration / paths.length, matches);
+    }
+  }
+
+}
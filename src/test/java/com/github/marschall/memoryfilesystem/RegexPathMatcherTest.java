@@ -1,15 +1,22 @@
 package com.github.marschall.memoryfilesystem;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 
 class RegexPathMatcherTest {
@@ -35,6 +42,65 @@ class RegexPathMatcherTest {
     assertEquals(expected, matcher.matches(path));
   }
 
+  @ParameterizedTest
+  @CsvSource(delimiter = ' ', value = {
+          "^/home/[^/]*/[^/]*\\.java$ /home/ .java",
+          "^src/main/[^/]*$ src/main/ ''",
+          "/home/.* /home/ ''",
+          ".*\\.((java)|(class)) '' ''",
+          "abc*d ab d",
+          "ab{2}c a c",
+          "abc abc ''",
+          "ab\\d ab ''",
+          "a|b '' ''",
+          "(?i)abc '' ''",
+          "[|]abc '' abc",
+          "x\\Q(\\E|y '' ''",
+          "\\\\a\\.b \\a.b ''",
+  })
+  void literals(String regex, String prefix, String suffix) {
+    RegexPathMatcher matcher = new RegexRelativePathMatcher(Pattern.compile(regex));
+    assertEquals(prefix, matcher.getLiteralPrefix());
+    assertEquals(suffix, matcher.getLiteralSuffix());
+  }
+
+  @Test
+  void noLiteralsWithCanonicalEquivalence() {
+    RegexPathMatcher matcher = new RegexRelativePathMatcher(Pattern.compile("abc", Pattern.CANON_EQ));
+    assertEquals("", matcher.getLiteralPrefix());
+    assertTrue(matcher.matches("abc"));
+  }
+
+  @Test
+  void literalsCaseInsensitive() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newWindows().build()) {
+      PathMatcher matcher = fileSystem.getPathMatcher("glob:C:\\\\Users\\\\*.TXT");
+      assertTrue(matcher.matches(fileSystem.getPath("c:\\users\\readme.txt")));
+      assertTrue(matcher.matches(fileSystem.getPath("C:\\Users\\README.TXT")));
+      assertFalse(matcher.matches(fileSystem.getPath("C:\\Users\\README.md")));
+      assertFalse(matcher.matches(fileSystem.getPath("D:\\Users\\README.TXT")));
+    }
+  }
+
+  @Test
+  void matchesStringsShorterThanLiterals() {
+    RegexPathMatcher matcher = new RegexRelativePathMatcher(Pattern.compile("abc.*cde"));
+    assertFalse(matcher.matches("abcde"));
+    assertTrue(matcher.matches("abccde"));
+  }
+
+  @Test
+  void nameFilters() {
+    RegexPathMatcher matcher = new RegexRelativePathMatcher(Pattern.compile("[^/]*\\.java"));
+    Predicate<String> first = matcher.newNameFilter();
+    Predicate<String> second = matcher.newNameFilter();
+    assertTrue(first.test("A.java"));
+    assertFalse(second.test("A.class"));
+    assertTrue(first.test("B.java"));
+    assertFalse(first.test("java"));
+    assertTrue(matcher.matches("C.java"));
+  }
+
   static List<Object[]> data() {
     return Arrays.asList(new Object[][] {
             { ".*\\.java", "GlobPathMatcherTest.java", true },
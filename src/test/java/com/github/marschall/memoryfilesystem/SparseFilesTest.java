@@ -0,0 +1,97 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class SparseFilesTest {
+
+  private static final long TERABYTE = 1024L * 1024L * 1024L * 1024L;
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  @Test
+  void writeAfterHole() throws IOException {
+    Path path = this.extension.getFileSystem().getPath("sparse");
+    try (FileChannel channel = FileChannel.open(path, CREATE_NEW, READ, WRITE)) {
+      // would need 1 TB of memory if the hole was allocated
+      channel.write(ByteBuffer.wrap(new byte[]{1, 2}), TERABYTE);
+      assertEquals(TERABYTE + 2L, channel.size());
+
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+      assertEquals(4, channel.read(buffer, TERABYTE - 2L));
+      assertArrayEquals(new byte[]{0, 0, 1, 2}, buffer.array());
+
+      long dataBlockStart = TERABYTE - (TERABYTE % MemoryInode.BLOCK_SIZE);
+      assertEquals(dataBlockStart, SparseFiles.nextData(channel, 0L));
+      assertEquals(0L, SparseFiles.nextHole(channel, 0L));
+      assertEquals(dataBlockStart, SparseFiles.nextData(channel, MemoryInode.BLOCK_SIZE));
+      assertEquals(MemoryInode.BLOCK_SIZE + 1L, SparseFiles.nextHole(channel, MemoryInode.BLOCK_SIZE + 1L));
+      assertEquals(TERABYTE, SparseFiles.nextData(channel, TERABYTE));
+      // the end of the file is a hole
+      assertEquals(TERABYTE + 2L, SparseFiles.nextHole(channel, TERABYTE));
+      assertEquals(-1L, SparseFiles.nextData(channel, TERABYTE + 2L));
+      assertEquals(-1L, SparseFiles.nextHole(channel, TERABYTE + 2L));
+    }
+  }
+
+  @Test
+  void holeReadsAsZeros() throws IOException {
+    Path path = this.extension.getFileSystem().getPath("sparse");
+    int holeEnd = MemoryInode.BLOCK_SIZE * 3 + 5;
+    try (FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{1}), 0L);
+      channel.write(ByteBuffer.wrap(new byte[]{2}), holeEnd);
+    }
+
+    byte[] expected = new byte[holeEnd + 1];
+    expected[0] = 1;
+    expected[holeEnd] = 2;
+    assertArrayEquals(expected, Files.readAllBytes(path));
+
+    try (FileChannel channel = FileChannel.open(path, READ)) {
+      assertEquals(MemoryInode.BLOCK_SIZE, SparseFiles.nextHole(channel, 0L));
+      assertEquals(MemoryInode.BLOCK_SIZE * 3L, SparseFiles.nextData(channel, MemoryInode.BLOCK_SIZE));
+    }
+  }
+
+  @Test
+  void copySparseFile() throws IOException {
+    Path source = this.extension.getFileSystem().getPath("source");
+    try (FileChannel channel = FileChannel.open(source, CREATE_NEW, WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{1}), TERABYTE);
+    }
+    Path target = Files.copy(source, this.extension.getFileSystem().getPath("target"));
+    try (FileChannel channel = FileChannel.open(target, READ)) {
+      assertEquals(TERABYTE + 1L, channel.size());
+      assertEquals(0L, SparseFiles.nextHole(channel, 0L));
+      assertEquals(TERABYTE - (TERABYTE % MemoryInode.BLOCK_SIZE), SparseFiles.nextData(channel, 0L));
+    }
+  }
+
+  @Test
+  void illegalArguments() throws IOException {
+    Path path = this.extension.getFileSystem().getPath("file");
+    FileChannel channel = FileChannel.open(path, CREATE_NEW, WRITE);
+    assertThrows(IllegalArgumentException.class, () -> SparseFiles.nextData(channel, -1L));
+    assertThrows(IllegalArgumentException.class, () -> SparseFiles.nextHole(channel, -1L));
+    channel.close();
+    assertThrows(ClosedChannelException.class, () -> SparseFiles.nextData(channel, 0L));
+    assertThrows(ClosedChannelException.class, () -> SparseFiles.nextHole(channel, 0L));
+  }
+
+}
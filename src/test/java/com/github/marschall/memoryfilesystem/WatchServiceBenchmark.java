@@ -0,0 +1,131 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Measures {@link MemoryWatchService}.
+ *
+ * <p>Run with {@code mvn test -Pbenchmark -Dtest=WatchServiceBenchmark}.</p>
+ */
+@Tag("benchmark")
+class WatchServiceBenchmark {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  /**
+   * Measures the time from creating a file until a thread waiting for the
+   * watch service receives the key.
+   */
+  @Test
+  void deliveryLatency() throws Exception {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+      int iterations = 20_000;
+      long[] created = new long[iterations];
+      long[] received = new long[iterations];
+      Thread consumer = new Thread(() -> {
+        try {
+          int seen = 0;
+          while (seen < iterations) {
+            WatchKey key = watchService.take();
+            long now = System.nanoTime();
+            for (WatchEvent<?> event : key.pollEvents()) {
+              if (event.kind() == ENTRY_CREATE) {
+                received[seen++] = now;
+              }
+            }
+            key.reset();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      consumer.start();
+      for (int i = 0; i < iterations; i++) {
+        Path file = directory.resolve("file");
+        created[i] = System.nanoTime();
+        Files.createFile(file);
+        Files.delete(file);
+        // give the consumer a chance to catch up so that every event is measured on its own
+        Thread.yield();
+      }
+      consumer.join();
+
+      long total = 0L;
+      for (int i = iterations / 2; i < iterations; i++) {
+        total += received[i] - created[i];
+      }
+      System.out.printf("delivery latency: %,d ns%n", total / (iterations - iterations / 2));
+    }
+  }
+
+  /**
+   * Compares watching every directory of a tree with watching the tree with
+   * a single key.
+   */
+  @Test
+  void fileTreeThroughput() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path tree = Files.createDirectory(fileSystem.getPath("/tree"));
+    List<Path> directories = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      for (int j = 0; j < 1_000; j++) {
+        directories.add(Files.createDirectories(tree.resolve("d" + i).resolve("e" + j)));
+      }
+    }
+    Path file = Files.createFile(directories.get(directories.size() / 2).resolve("file"));
+
+    for (boolean fileTree : new boolean[] {false, true}) {
+      try (WatchService watchService = fileSystem.newWatchService();
+           FileChannel channel = FileChannel.open(file, WRITE)) {
+        long start = System.nanoTime();
+        if (fileTree) {
+          tree.register(watchService, new Kind<?>[] {ENTRY_MODIFY}, MemoryWatchEventModifier.FILE_TREE);
+        } else {
+          for (Path directory : directories) {
+            directory.register(watchService, ENTRY_MODIFY);
+          }
+        }
+        long registration = System.nanoTime() - start;
+
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        int iterations = 1_000_000;
+        long duration = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+          start = System.nanoTime();
+          for (int i = 0; i < iterations; i++) {
+            buffer.clear();
+            channel.write(buffer, 0L);
+          }
+          duration = Math.min(duration, System.nanoTime() - start);
+        }
+        System.out.printf("%-20s registration: %,d us, write: %,d ns/op%n",
+                fileTree ? "file tree" : directories.size() + " keys", registration / 1_000L, duration / iterations);
+      }
+    }
+  }
+
+}
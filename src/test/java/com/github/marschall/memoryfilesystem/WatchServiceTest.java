@@ -0,0 +1,531 @@
+package com.github.marschall.memoryfilesystem;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchEvent.Kind;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class WatchServiceTest {
+
+  @RegisterExtension
+  final FileSystemExtension extension = new FileSystemExtension();
+
+  @Test
+  void createModifyDelete() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      assertNull(watchService.poll());
+
+      Path file = directory.resolve("file");
+      Files.write(file, new byte[]{1, 2, 3});
+      Files.delete(file);
+
+      assertSame(key, watchService.poll());
+      assertNull(watchService.poll(), "key should only be queued once");
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(3, events.size());
+      assertEvent(events.get(0), ENTRY_CREATE, "file");
+      assertEvent(events.get(1), ENTRY_MODIFY, "file");
+      assertEvent(events.get(2), ENTRY_DELETE, "file");
+      assertSame(directory, key.watchable());
+      assertTrue(key.reset());
+      assertNull(watchService.poll());
+    }
+  }
+
+  @Test
+  void modificationsCoalesced() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    Path file = Files.write(directory.resolve("file"), new byte[]{1});
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_MODIFY);
+      try (OutputStream stream = Files.newOutputStream(file)) {
+        for (int i = 0; i < 100; i++) {
+          stream.write(i);
+        }
+      }
+
+      assertSame(key, watchService.poll());
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(1, events.size());
+      assertEvent(events.get(0), ENTRY_MODIFY, "file");
+      // the truncation and every write
+      assertEquals(101, events.get(0).count());
+    }
+  }
+
+  @Test
+  void modificationsNotCoalescedAcrossDeletion() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    Path file = directory.resolve("file");
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      Files.write(file, new byte[]{1});
+      Files.delete(file);
+      Files.write(file, new byte[]{1});
+
+      List<WatchEvent<?>> events = watchService.poll().pollEvents();
+      assertEquals(5, events.size());
+      assertEvent(events.get(3), ENTRY_CREATE, "file");
+      assertEvent(events.get(4), ENTRY_MODIFY, "file");
+      assertTrue(key.reset());
+    }
+  }
+
+  @Test
+  void noOpModificationsNotSignalled() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    Path file = Files.write(directory.resolve("file"), new byte[]{1});
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      directory.register(watchService, ENTRY_MODIFY);
+      try (FileChannel channel = FileChannel.open(file, WRITE)) {
+        channel.write(ByteBuffer.allocate(0), 0L);
+        channel.truncate(1L);
+        channel.truncate(2L);
+      }
+      assertNull(watchService.poll());
+    }
+  }
+
+  @Test
+  void hardLinkModified() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path first = Files.createDirectory(fileSystem.getPath("/first"));
+    Path second = Files.createDirectory(fileSystem.getPath("/second"));
+    Path file = Files.createFile(first.resolve("file"));
+    Path link = Files.createLink(second.resolve("link"), file);
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey firstKey = first.register(watchService, ENTRY_MODIFY);
+      WatchKey secondKey = second.register(watchService, ENTRY_MODIFY);
+
+      Files.write(link, new byte[]{1});
+      List<WatchEvent<?>> events = firstKey.pollEvents();
+      assertEquals(1, events.size());
+      assertEvent(events.get(0), ENTRY_MODIFY, "file");
+      events = secondKey.pollEvents();
+      assertEquals(1, events.size());
+      assertEvent(events.get(0), ENTRY_MODIFY, "link");
+      assertTrue(firstKey.reset());
+      assertTrue(secondKey.reset());
+
+      // the remaining link still signals its directory
+      Files.delete(file);
+      Files.write(link, new byte[]{2});
+      assertTrue(firstKey.pollEvents().isEmpty());
+      events = secondKey.pollEvents();
+      assertEquals(1, events.size());
+      assertEvent(events.get(0), ENTRY_MODIFY, "link");
+    }
+  }
+
+  @Test
+  void onlyRegisteredKinds() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_DELETE);
+      Path file = Files.createFile(directory.resolve("file"));
+      Files.write(file, new byte[]{1});
+      assertNull(watchService.poll());
+
+      Files.delete(file);
+      assertSame(key, watchService.poll());
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(1, events.size());
+      assertEvent(events.get(0), ENTRY_DELETE, "file");
+    }
+  }
+
+  @Test
+  void registerAgainReplacesEvents() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_DELETE);
+      assertSame(key, directory.register(watchService, ENTRY_CREATE, OVERFLOW));
+      Files.createFile(directory.resolve("file"));
+      assertSame(key, watchService.poll());
+    }
+  }
+
+  @Test
+  void resetRequeuesPendingEvents() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE);
+      Files.createFile(directory.resolve("first"));
+      assertSame(key, watchService.poll());
+      assertEquals(1, key.pollEvents().size());
+
+      Files.createFile(directory.resolve("second"));
+      assertNull(watchService.poll(), "signaled key must not be queued before reset");
+      assertTrue(key.reset());
+      assertSame(key, watchService.poll());
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(1, events.size());
+      assertEvent(events.get(0), ENTRY_CREATE, "second");
+    }
+  }
+
+  @Test
+  void move() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path source = Files.createDirectory(fileSystem.getPath("/source"));
+    Path target = Files.createDirectory(fileSystem.getPath("/target"));
+    Path file = Files.createFile(source.resolve("file"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey sourceKey = source.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+      WatchKey targetKey = target.register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+      Files.move(file, target.resolve("renamed"));
+
+      List<WatchEvent<?>> sourceEvents = sourceKey.pollEvents();
+      assertEquals(1, sourceEvents.size());
+      assertEvent(sourceEvents.get(0), ENTRY_DELETE, "file");
+      List<WatchEvent<?>> targetEvents = targetKey.pollEvents();
+      assertEquals(1, targetEvents.size());
+      assertEvent(targetEvents.get(0), ENTRY_CREATE, "renamed");
+    }
+  }
+
+  @Test
+  void watchedDirectoryMoved() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE);
+      Path moved = Files.move(directory, fileSystem.getPath("/moved"));
+      Files.createFile(moved.resolve("file"));
+
+      assertSame(key, watchService.poll());
+      assertTrue(key.isValid());
+      assertEvent(key.pollEvents().get(0), ENTRY_CREATE, "file");
+    }
+  }
+
+  @Test
+  void watchedDirectoryDeleted() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE);
+      Files.delete(directory);
+
+      assertSame(key, watchService.poll());
+      assertFalse(key.isValid());
+      assertFalse(key.reset());
+
+      Files.createDirectory(directory);
+      Files.createFile(directory.resolve("file"));
+      assertNull(watchService.poll());
+    }
+  }
+
+  @Test
+  void cancel() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE);
+      key.cancel();
+      assertFalse(key.isValid());
+      Files.createFile(directory.resolve("file"));
+      assertNull(watchService.poll());
+
+      WatchKey newKey = directory.register(watchService, ENTRY_CREATE);
+      assertTrue(newKey != key);
+      assertTrue(newKey.isValid());
+    }
+  }
+
+  @Test
+  void overflow() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE);
+      for (int i = 0; i < MemoryWatchKey.DEFAULT_EVENT_CAPACITY + 100; i++) {
+        Files.createFile(directory.resolve("file" + i));
+      }
+
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(MemoryWatchKey.DEFAULT_EVENT_CAPACITY + 1, events.size());
+      WatchEvent<?> overflow = events.get(events.size() - 1);
+      assertEquals(OVERFLOW, overflow.kind());
+      assertEquals(100, overflow.count());
+      assertNull(overflow.context());
+      assertTrue(key.reset());
+
+      Files.createFile(directory.resolve("file"));
+      assertEquals(1, key.pollEvents().size());
+    }
+  }
+
+  @Test
+  void eventCapacity() throws IOException {
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setWatchEventCapacity(2).build()) {
+      Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+      Path first = Files.createFile(directory.resolve("first"));
+      Path second = Files.createFile(directory.resolve("second"));
+      try (WatchService watchService = fileSystem.newWatchService()) {
+        WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        Files.write(first, new byte[]{1});
+        Files.write(second, new byte[]{1});
+        // modifications of entries that already have an event still count
+        Files.write(first, new byte[]{1});
+        Files.createFile(directory.resolve("third"));
+
+        List<WatchEvent<?>> events = key.pollEvents();
+        assertEquals(3, events.size());
+        assertEvent(events.get(0), ENTRY_MODIFY, "first");
+        assertEquals(3, events.get(0).count());
+        assertEvent(events.get(1), ENTRY_MODIFY, "second");
+        assertEquals(OVERFLOW, events.get(2).kind());
+        assertEquals(1, events.get(2).count());
+      }
+    }
+  }
+
+  /**
+   * A consumer that does not keep up with a million modifications of
+   * thousands of files only ever sees a bounded number of events and the
+   * key only tracks a bounded number of files.
+   */
+  @Test
+  void slowConsumer() throws IOException {
+    int capacity = 1_000;
+    try (FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().setWatchEventCapacity(capacity).build()) {
+      Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+      int fileCount = 10_000;
+      FileChannel[] channels = new FileChannel[fileCount];
+      try (WatchService watchService = fileSystem.newWatchService()) {
+        WatchKey key = directory.register(watchService, ENTRY_MODIFY);
+        for (int i = 0; i < fileCount; i++) {
+          channels[i] = FileChannel.open(directory.resolve("file" + i), CREATE_NEW, WRITE);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        int modifications = 1_000_000;
+        for (int i = 0; i < modifications; i++) {
+          buffer.clear();
+          channels[i % fileCount].write(buffer, 0L);
+          if (i == fileCount) {
+            assertEquals(capacity, ((MemoryWatchKey) key).getModificationEventCount());
+          }
+        }
+        // only the files with an event are tracked for coalescing
+        assertEquals(capacity, ((MemoryWatchKey) key).getModificationEventCount());
+
+        List<WatchEvent<?>> events = key.pollEvents();
+        assertEquals(capacity + 1, events.size());
+        int total = 0;
+        for (WatchEvent<?> event : events) {
+          total += event.count();
+        }
+        assertEquals(modifications, total);
+        WatchEvent<?> overflow = events.get(capacity);
+        assertEquals(OVERFLOW, overflow.kind());
+      } finally {
+        for (FileChannel channel : channels) {
+          if (channel != null) {
+            channel.close();
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void fileTree() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path tree = Files.createDirectory(fileSystem.getPath("/tree"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = tree.register(watchService, new Kind<?>[] {ENTRY_CREATE, ENTRY_MODIFY}, MemoryWatchEventModifier.FILE_TREE);
+      Path file = Files.createDirectories(tree.resolve("a/b")).resolve("file");
+      Files.write(file, new byte[]{1});
+
+      assertSame(key, watchService.poll());
+      assertNull(watchService.poll());
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(4, events.size());
+      assertEvent(events.get(0), ENTRY_CREATE, "a");
+      assertEvent(events.get(1), ENTRY_CREATE, "a/b");
+      assertEvent(events.get(2), ENTRY_CREATE, "a/b/file");
+      assertEvent(events.get(3), ENTRY_MODIFY, "a/b/file");
+      assertEquals(fileSystem.getPath("a/b/file"), events.get(3).context());
+    }
+  }
+
+  @Test
+  void fileTreeMoves() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path tree = Files.createDirectory(fileSystem.getPath("/tree"));
+    Path outside = Files.createDirectories(fileSystem.getPath("/outside/sub"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = tree.register(watchService, new Kind<?>[] {ENTRY_CREATE, ENTRY_DELETE}, MemoryWatchEventModifier.FILE_TREE);
+      Path moved = Files.move(outside, tree.resolve("sub"));
+      Files.createFile(moved.resolve("in"));
+      Path movedOut = Files.move(moved, fileSystem.getPath("/outside/sub"));
+      Files.createFile(movedOut.resolve("out"));
+
+      List<WatchEvent<?>> events = key.pollEvents();
+      assertEquals(3, events.size());
+      assertEvent(events.get(0), ENTRY_CREATE, "sub");
+      assertEvent(events.get(1), ENTRY_CREATE, "sub/in");
+      assertEvent(events.get(2), ENTRY_DELETE, "sub");
+    }
+  }
+
+  @Test
+  void fileTreeOnlyForRegisteringKey() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path tree = Files.createDirectories(fileSystem.getPath("/tree/sub")).getParent();
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = fileSystem.getPath("/").register(watchService, ENTRY_CREATE);
+      WatchKey subKey = tree.register(watchService, new Kind<?>[] {ENTRY_CREATE}, MemoryWatchEventModifier.FILE_TREE);
+      Files.createFile(tree.resolve("sub/file"));
+
+      assertSame(subKey, watchService.poll());
+      assertNull(watchService.poll());
+      assertEvent(subKey.pollEvents().get(0), ENTRY_CREATE, "sub/file");
+
+      // registering again without the modifier only watches the directory
+      assertTrue(subKey.reset());
+      assertSame(subKey, tree.register(watchService, ENTRY_CREATE));
+      Files.createFile(tree.resolve("sub/other"));
+      assertNull(watchService.poll());
+      assertTrue(key.pollEvents().isEmpty());
+    }
+  }
+
+  @Test
+  void unsupportedModifier() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchEvent.Modifier sensitivity = () -> "SENSITIVITY_HIGH";
+      assertThrows(UnsupportedOperationException.class, () -> directory.register(watchService, new Kind<?>[] {ENTRY_CREATE}, sensitivity));
+    }
+  }
+
+  @Test
+  void registerFile() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path file = Files.createFile(fileSystem.getPath("/file"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      assertThrows(NotDirectoryException.class, () -> file.register(watchService, ENTRY_CREATE));
+      assertThrows(NoSuchFileException.class, () -> fileSystem.getPath("/missing").register(watchService, ENTRY_CREATE));
+    }
+  }
+
+  @Test
+  void closedWatchService() throws IOException {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    WatchService watchService = fileSystem.newWatchService();
+    WatchKey key = directory.register(watchService, ENTRY_CREATE);
+    watchService.close();
+    // closing twice is allowed
+    watchService.close();
+
+    assertFalse(key.isValid());
+    assertThrows(ClosedWatchServiceException.class, () -> watchService.poll());
+    assertThrows(ClosedWatchServiceException.class, () -> watchService.take());
+    assertThrows(ClosedWatchServiceException.class, () -> directory.register(watchService, ENTRY_CREATE));
+  }
+
+  @Test
+  void closeWakesUpTake() throws Exception {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    WatchService watchService = fileSystem.newWatchService();
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    CountDownLatch started = new CountDownLatch(1);
+    Thread thread = new Thread(() -> {
+      started.countDown();
+      try {
+        watchService.take();
+      } catch (Throwable t) {
+        thrown.set(t);
+      }
+    });
+    thread.start();
+    started.await();
+    watchService.close();
+    thread.join(TimeUnit.SECONDS.toMillis(10L));
+
+    assertFalse(thread.isAlive());
+    assertTrue(thrown.get() instanceof ClosedWatchServiceException);
+  }
+
+  @Test
+  void closeFileSystem() throws IOException {
+    FileSystem fileSystem = MemoryFileSystemBuilder.newEmpty().build();
+    WatchService watchService = fileSystem.newWatchService();
+    WatchKey key = fileSystem.getPath("/").register(watchService, ENTRY_CREATE);
+    fileSystem.close();
+
+    assertFalse(key.isValid());
+    assertThrows(ClosedWatchServiceException.class, () -> watchService.poll());
+  }
+
+  @Test
+  void take() throws Exception {
+    FileSystem fileSystem = this.extension.getFileSystem();
+    Path directory = Files.createDirectory(fileSystem.getPath("/directory"));
+    try (WatchService watchService = fileSystem.newWatchService()) {
+      WatchKey key = directory.register(watchService, ENTRY_CREATE);
+      Thread thread = new Thread(() -> {
+        try {
+          Files.createFile(directory.resolve("file"));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      thread.start();
+
+      assertSame(key, watchService.poll(10L, TimeUnit.SECONDS));
+      thread.join();
+      assertEvent(key.pollEvents().get(0), ENTRY_CREATE, "file");
+    }
+  }
+
+  private static void assertEvent(WatchEvent<?> event, Kind<?> kind, String context) {
+    assertEquals(kind, event.kind());
+    assertEquals(context, event.context().toString());
+  }
+
+}